@@ -0,0 +1,71 @@
+package schawath.maxime;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Relaxation kernel using the incubating Vector API: head distances are gathered a vector at a
+ * time, compared with the tail distance plus the arc weights, and the lanes of the resulting
+ * mask are the improving arcs. The distance update itself stays scalar since each improved
+ * head also needs a predecessor and a queue update (and parallel arcs would make a scatter racy).
+ * Kept in the optional src-vector source root so that the main tree builds without compiler flags;
+ * compile it after src/, with the output of src/ on the class path and --add-modules jdk.incubator.vector,
+ * then run with the same flag. Only loaded by {@link DijkstraVectorized} when the module is present.
+ */
+final class VectorRelaxationKernel extends RelaxationKernel {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    VectorRelaxationKernel(CsrGraph graph, boolean intMode) {
+        super(graph, intMode);
+    }
+
+    @Override
+    int improving(int begin, int end, long base, int[] out) {
+        int n = 0;
+        int arc = begin;
+        if (intDistance != null) {
+            IntVector tail = IntVector.broadcast(INTS, (int) base);
+            for (int upper = end - INTS.length(); arc <= upper; arc += INTS.length()) {
+                IntVector candidate = IntVector.fromArray(INTS, intWeight, arc).add(tail);
+                IntVector current = IntVector.fromArray(INTS, intDistance, 0, head, arc);
+                VectorMask<Integer> mask = candidate.compare(VectorOperators.LT, current);
+                if (!mask.anyTrue()) continue; // the common case once the search is advanced
+                for (long lanes = mask.toLong(); lanes != 0; lanes &= lanes - 1) {
+                    out[n++] = arc + Long.numberOfTrailingZeros(lanes);
+                }
+            }
+            for (; arc < end; ++arc) {
+                if (base + intWeight[arc] < intDistance[head[arc]]) out[n++] = arc;
+            }
+        } else {
+            LongVector tail = LongVector.broadcast(LONGS, base);
+            for (int upper = end - LONGS.length(); arc <= upper; arc += LONGS.length()) {
+                LongVector candidate = LongVector.fromArray(LONGS, weight, arc).add(tail);
+                LongVector current = LongVector.fromArray(LONGS, distance, 0, head, arc);
+                VectorMask<Long> mask = candidate.compare(VectorOperators.LT, current);
+                if (!mask.anyTrue()) continue;
+                for (long lanes = mask.toLong(); lanes != 0; lanes &= lanes - 1) {
+                    out[n++] = arc + Long.numberOfTrailingZeros(lanes);
+                }
+            }
+            for (; arc < end; ++arc) {
+                if (base + weight[arc] < distance[head[arc]]) out[n++] = arc;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    int getBatchSize() {
+        return intDistance != null ? INTS.length() : LONGS.length();
+    }
+
+    @Override
+    String getName() {
+        return (intDistance != null ? "vector-int" : "vector-long") + "x" + getBatchSize();
+    }
+}
@@ -0,0 +1,15 @@
+package schawath.maxime;
+
+/**
+ * Strategies choosing which direction a bidirectional search advances next
+ *
+ * @see DijkstraBidirectionalConfigurable
+ */
+public enum AlternationStrategy {
+    /** One settled vertex per direction, alternately, as {@link DijkstraBidirectional} */
+    STRICT,
+    /** Advance the direction with the fewest queued vertices */
+    SMALLER_QUEUE,
+    /** Advance the direction with the smallest distance in its queue, so both radii grow evenly */
+    SMALLER_RADIUS
+}
@@ -0,0 +1,394 @@
+package schawath.maxime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Contraction of the chains of degree-2 vertices of an undirected graph.
+ * A vertex with exactly two distinct neighbours lies inside a chain; every other vertex (one per
+ * cycle made only of degree-2 vertices) is kept in the reduced graph. Each chain between two kept
+ * vertices becomes one arc weighted by the chain length, and its intermediate vertices are stored
+ * in order with their distance from the first end, so searches settle only the kept vertices.
+ * Queries take original ids: an endpoint inside a chain is linked to both ends of its chain,
+ * and the path found on the reduced graph is expanded back to original ids.
+ * An instance reuses its search workspace and must not be shared between threads.
+ */
+public final class ChainContraction {
+    private final int nVertices;
+    private final int[] coreId;        // id of a kept vertex in the reduced graph, -1 inside a chain
+    private final int[] coreVertex;    // original id of each reduced vertex
+    private final CsrGraph reduced;
+    private final int[] arcChain;      // chain of each reduced arc, -1 for an original edge
+    private final int[] chainOf;       // chain of a vertex inside a chain, -1 for a kept vertex
+    private final int[] positionOf;    // index of a vertex in its chain
+    private final int[] chainEndA;     // reduced id of the end before the first intermediate vertex
+    private final int[] chainEndB;     // reduced id of the end after the last intermediate vertex
+    private final long[] chainLength;
+    private final int[] chainStart;    // intermediate vertices of chain c are in [chainStart[c], chainStart[c + 1])
+    private final int[] chainVertices;
+    private final long[] chainDistance; // distance from end A to each intermediate vertex
+    private final SearchWorkspace workspace;
+
+    /**
+     * Contract the chains of a graph
+     *
+     * @param graph - the graph, undirected (predecessors are the successors)
+     */
+    public ChainContraction(WeightedGraph graph) {
+        nVertices = graph.getNVertices();
+        // distinct neighbours of each vertex, with the lightest weight
+        int[][] neighbours = new int[nVertices][];
+        long[][] weights = new long[nVertices][];
+        for (int v = 0; v < nVertices; ++v) {
+            collectNeighbours(graph, v, neighbours, weights);
+        }
+
+        coreId = new int[nVertices];
+        int nCore = 0;
+        for (int v = 0; v < nVertices; ++v) {
+            coreId[v] = neighbours[v].length == 2 ? -1 : nCore++;
+        }
+        // cycles of degree-2 vertices only: keep one vertex per cycle
+        boolean[] seen = new boolean[nVertices];
+        for (int v = 0; v < nVertices; ++v) {
+            if (coreId[v] != -1 || seen[v]) continue;
+            int prev = v, cur = v;
+            do {
+                seen[cur] = true;
+                int next = neighbours[cur][0] != prev ? neighbours[cur][0] : neighbours[cur][1];
+                prev = cur;
+                cur = next;
+            } while (coreId[cur] == -1 && !seen[cur]); // a seen vertex leads to a kept one, or is v
+            if (cur == v) coreId[v] = nCore++;
+        }
+        coreVertex = new int[nCore];
+        for (int v = 0; v < nVertices; ++v) {
+            if (coreId[v] != -1) coreVertex[coreId[v]] = v;
+        }
+
+        // walk every chain from both ends; it is stored the first time, and both walks add an arc
+        chainOf = new int[nVertices];
+        positionOf = new int[nVertices];
+        Arrays.fill(chainOf, -1);
+        IntList ends = new IntList();
+        LongList lengths = new LongList();
+        IntList starts = new IntList();
+        IntList inside = new IntList();
+        LongList distances = new LongList();
+        int[] firstOut = new int[nCore + 1];
+        IntList heads = new IntList();
+        IntList tails = new IntList();
+        LongList arcWeights = new LongList();
+        IntList chains = new IntList();
+        starts.add(0);
+        int[] walk = new int[16];
+        long[] walkDistance = new long[16];
+        for (int c = 0; c < nCore; ++c) {
+            int a = coreVertex[c];
+            for (int i = 0; i < neighbours[a].length; ++i) {
+                int prev = a, cur = neighbours[a][i];
+                long length = weights[a][i];
+                int size = 0;
+                while (coreId[cur] == -1) {
+                    if (size == walk.length) {
+                        walk = Arrays.copyOf(walk, 2 * size);
+                        walkDistance = Arrays.copyOf(walkDistance, 2 * size);
+                    }
+                    walk[size] = cur;
+                    walkDistance[size++] = length;
+                    int k = neighbours[cur][0] != prev ? 0 : 1;
+                    length += weights[cur][k];
+                    prev = cur;
+                    cur = neighbours[cur][k];
+                }
+                int chain = -1;
+                if (size > 0) {
+                    chain = chainOf[walk[0]];
+                    if (chain == -1) {
+                        chain = ends.size() / 2;
+                        ends.add(c);
+                        ends.add(coreId[cur]);
+                        lengths.add(length);
+                        for (int j = 0; j < size; ++j) {
+                            chainOf[walk[j]] = chain;
+                            positionOf[walk[j]] = j;
+                            inside.add(walk[j]);
+                            distances.add(walkDistance[j]);
+                        }
+                        starts.add(inside.size());
+                    }
+                }
+                if (cur == a) continue; // a loop never shortens a path
+                heads.add(coreId[cur]);
+                tails.add(c);
+                arcWeights.add(length);
+                chains.add(chain);
+            }
+            firstOut[c + 1] = heads.size();
+        }
+        reduced = CsrGraph.fromArcs(nCore, firstOut, heads.toArray(), tails.toArray(), arcWeights.toArray());
+        arcChain = chains.toArray();
+        int[] endArray = ends.toArray();
+        int nChains = endArray.length / 2;
+        chainEndA = new int[nChains];
+        chainEndB = new int[nChains];
+        for (int k = 0; k < nChains; ++k) {
+            chainEndA[k] = endArray[2 * k];
+            chainEndB[k] = endArray[2 * k + 1];
+        }
+        chainLength = lengths.toArray();
+        chainStart = starts.toArray();
+        chainVertices = inside.toArray();
+        chainDistance = distances.toArray();
+        workspace = new SearchWorkspace(nCore);
+    }
+
+    private static void collectNeighbours(WeightedGraph graph, int v, int[][] neighbours, long[][] weights) {
+        IntList ids = new IntList();
+        LongList w = new LongList();
+        graph.forEachSuccessor(v, (u, weight) -> {
+            if (u == v) return; // self-loops are never on a shortest path
+            for (int i = 0; i < ids.size(); ++i) {
+                if (ids.get(i) == u) {
+                    if (weight < w.get(i)) w.set(i, weight);
+                    return;
+                }
+            }
+            ids.add(u);
+            w.add(weight);
+        });
+        neighbours[v] = ids.toArray();
+        weights[v] = w.toArray();
+    }
+
+    /** @return the reduced graph, with reduced vertex ids (see {@link #getOriginalId}) */
+    public CsrGraph getReducedGraph() {
+        return reduced;
+    }
+
+    /** @return number of vertices kept in the reduced graph */
+    public int getNReducedVertices() {
+        return coreVertex.length;
+    }
+
+    /** @return number of contracted chains */
+    public int getNChains() {
+        return chainLength.length;
+    }
+
+    /**
+     * @param reducedId - a vertex id of the reduced graph
+     * @return its original id
+     */
+    public int getOriginalId(int reducedId) {
+        return coreVertex[reducedId];
+    }
+
+    /**
+     * Run a query with original vertex ids
+     *
+     * @param from - the source vertex id
+     * @param to   - the destination vertex id
+     * @return the result, with the path expanded to original ids (empty if unreachable)
+     */
+    public DijkstraResult run(int from, int to) {
+        if (from < 0 || from >= nVertices || to < 0 || to >= nVertices)
+            throw new IllegalArgumentException("Vertex id must be between " + 0 + " and " + (nVertices - 1));
+        long best = Long.MAX_VALUE;
+        int bestTarget = -1; // reduced vertex through which the target is reached, -1 for the direct chain path
+        if (from == to) best = 0;
+        if (chainOf[from] != -1 && chainOf[from] == chainOf[to]) {
+            best = Math.min(best, Math.abs(chainDistance[chainStart[chainOf[from]] + positionOf[from]]
+                    - chainDistance[chainStart[chainOf[to]] + positionOf[to]]));
+        }
+
+        // seed the ends linking the source to the reduced graph, the predecessor -1 marks a seed
+        workspace.reset();
+        if (coreId[from] != -1) {
+            workspace.relax(coreId[from], 0, -1);
+        } else {
+            long toA = toEndA(from);
+            workspace.relax(chainEndA[chainOf[from]], toA, -1);
+            workspace.relax(chainEndB[chainOf[from]], chainLength[chainOf[from]] - toA, -1);
+        }
+
+        int steps = 0;
+        int nbVisited = 0;
+        IndexedMinHeap queue = workspace.queue();
+        while (!queue.isEmpty() && queue.minKey() < best) {
+            int u = queue.poll();
+            ++nbVisited;
+            long du = workspace.getDistance(u);
+            long toTarget = distanceToTarget(u, to);
+            if (toTarget != Long.MAX_VALUE && du + toTarget < best) {
+                best = du + toTarget;
+                bestTarget = u;
+            }
+            for (int arc = reduced.firstOut(u); arc < reduced.endOut(u); ++arc) {
+                ++steps;
+                workspace.relax(reduced.head(arc), du + reduced.weight(arc), u);
+            }
+        }
+
+        List<Integer> path;
+        if (best == Long.MAX_VALUE) {
+            path = Collections.emptyList();
+        } else if (bestTarget == -1) {
+            path = chainPath(from, to);
+        } else {
+            path = expand(from, to, bestTarget);
+        }
+        double distance = best == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : best;
+        return new DijkstraResult(steps, nbVisited, distance, path) {
+            @Override
+            void print() {
+                System.out.println("From " + from + " to " + to + " : " + getDistance() + " " + getVerticesList() + " in " + getSteps() + " steps and " + getNbVisited() + " nodes visited");
+            }
+        };
+    }
+
+    private long toEndA(int v) {
+        return chainDistance[chainStart[chainOf[v]] + positionOf[v]];
+    }
+
+    /**
+     * @return distance from a reduced vertex to the target along the chain of the target (or 0 if it is the target)
+     */
+    private long distanceToTarget(int u, int to) {
+        if (coreId[to] != -1) return coreId[to] == u ? 0 : Long.MAX_VALUE;
+        int chain = chainOf[to];
+        long d = Long.MAX_VALUE;
+        if (chainEndA[chain] == u) d = toEndA(to);
+        if (chainEndB[chain] == u) d = Math.min(d, chainLength[chain] - toEndA(to));
+        return d;
+    }
+
+    /**
+     * Path between two vertices of the same chain, along the chain
+     */
+    private List<Integer> chainPath(int from, int to) {
+        List<Integer> path = new ArrayList<>();
+        if (from == to) {
+            path.add(from);
+            return path;
+        }
+        int base = chainStart[chainOf[from]];
+        int step = positionOf[to] > positionOf[from] ? 1 : -1;
+        for (int i = positionOf[from]; i != positionOf[to] + step; i += step) {
+            path.add(chainVertices[base + i]);
+        }
+        return path;
+    }
+
+    /**
+     * Expand the path found on the reduced graph: source part of its chain, reduced arcs, target part
+     */
+    private List<Integer> expand(int from, int to, int target) {
+        List<Integer> core = new ArrayList<>();
+        for (int u = target; u != -1; u = workspace.getPredecessor(u)) {
+            core.add(u);
+        }
+        Collections.reverse(core);
+
+        List<Integer> path = new ArrayList<>();
+        if (coreId[from] == -1) {
+            // walk from the source to the seed end the search started from
+            int chain = chainOf[from];
+            int first = core.get(0);
+            long toA = toEndA(from);
+            boolean viaA = chainEndA[chain] == first
+                    && (chainEndB[chain] != first || toA <= chainLength[chain] - toA);
+            appendInside(path, chain, positionOf[from], viaA ? -1 : chainStart[chain + 1] - chainStart[chain]);
+        }
+        path.add(coreVertex[core.get(0)]);
+        for (int i = 1; i < core.size(); ++i) {
+            int u = core.get(i - 1), v = core.get(i);
+            int chain = arcChain[reduced.findArc(u, v)];
+            if (chain != -1) {
+                int size = chainStart[chain + 1] - chainStart[chain];
+                if (chainEndA[chain] == u) {
+                    appendInside(path, chain, 0, size);
+                } else {
+                    appendInside(path, chain, size - 1, -1);
+                }
+            }
+            path.add(coreVertex[v]);
+        }
+        if (coreId[to] == -1) {
+            // walk from the last reduced vertex to the target
+            int chain = chainOf[to];
+            long toA = toEndA(to);
+            boolean fromA = chainEndA[chain] == target
+                    && (chainEndB[chain] != target || toA <= chainLength[chain] - toA);
+            int size = chainStart[chain + 1] - chainStart[chain];
+            if (fromA) {
+                appendInside(path, chain, 0, positionOf[to] + 1);
+            } else {
+                appendInside(path, chain, size - 1, positionOf[to] - 1);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Append the intermediate vertices of a chain, from position first (included) to end (excluded)
+     */
+    private void appendInside(List<Integer> path, int chain, int first, int end) {
+        int step = end > first ? 1 : -1;
+        for (int i = first; i != end; i += step) {
+            path.add(chainVertices[chainStart[chain] + i]);
+        }
+    }
+
+    /**
+     * Growable int array
+     */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Growable long array
+     */
+    private static final class LongList {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+
+        long get(int i) {
+            return values[i];
+        }
+
+        void set(int i, long value) {
+            values[i] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
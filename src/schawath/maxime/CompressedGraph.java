@@ -0,0 +1,217 @@
+package schawath.maxime;
+
+import java.util.Arrays;
+
+/**
+ * Compressed adjacency storage.
+ * Vertices are renumbered with a locality preserving order (see {@link VertexOrdering}), so
+ * neighbours have close ids. Each adjacency list is sorted and stored in a byte stream as
+ * varints: the degree, then for each arc the gap to the previous neighbour id (the first one
+ * relative to the vertex itself, zigzag encoded) followed by the weight.
+ * Only the stream offset of one vertex out of {@link #SAMPLE_RATE} is kept; to reach the
+ * list of a vertex, the lists before it since the last sample are skipped.
+ * Lists are decoded on the fly while a search visits them; the renumbering is hidden,
+ * vertex ids given to and received from the visitors are the original ones.
+ */
+public final class CompressedGraph implements WeightedGraph {
+    /** One offset is kept every SAMPLE_RATE vertices */
+    public static final int SAMPLE_RATE = 16;
+
+    private final int[] toInternal;
+    private final int[] toExternal;
+    private final byte[] successors;
+    private final int[] successorSamples;
+    private final byte[] predecessors;      // same as successors for a symmetric graph
+    private final int[] predecessorSamples;
+    private final long nArcs;
+
+    private CompressedGraph(int[] toInternal, int[] toExternal, byte[] successors, int[] successorSamples,
+                            byte[] predecessors, int[] predecessorSamples, long nArcs) {
+        this.toInternal = toInternal;
+        this.toExternal = toExternal;
+        this.successors = successors;
+        this.successorSamples = successorSamples;
+        this.predecessors = predecessors;
+        this.predecessorSamples = predecessorSamples;
+        this.nArcs = nArcs;
+    }
+
+    /**
+     * Compress a graph
+     *
+     * @param graph     - the graph to compress
+     * @param order     - order[i] = id of the vertex to store at position i, e.g. {@link VertexOrdering#hilbert}
+     * @param symmetric - true if predecessors are the successors (undirected graph), to store them once
+     * @return the compressed graph
+     */
+    public static CompressedGraph of(WeightedGraph graph, int[] order, boolean symmetric) {
+        int n = graph.getNVertices();
+        if (order.length != n)
+            throw new IllegalArgumentException("Order must contain " + n + " vertices");
+        int[] toInternal = new int[n];
+        Arrays.fill(toInternal, -1);
+        for (int i = 0; i < n; ++i) {
+            if (toInternal[order[i]] != -1)
+                throw new IllegalArgumentException("Order is not a permutation");
+            toInternal[order[i]] = i;
+        }
+        int[] toExternal = order.clone();
+
+        Encoder forward = new Encoder(n, toInternal);
+        for (int i = 0; i < n; ++i) {
+            forward.begin(i);
+            graph.forEachSuccessor(toExternal[i], forward::add);
+            forward.end();
+        }
+        if (symmetric) {
+            return new CompressedGraph(toInternal, toExternal, forward.bytes(), forward.samples,
+                    forward.bytes(), forward.samples, forward.nArcs);
+        }
+        Encoder backward = new Encoder(n, toInternal);
+        for (int i = 0; i < n; ++i) {
+            backward.begin(i);
+            graph.forEachPredecessor(toExternal[i], backward::add);
+            backward.end();
+        }
+        return new CompressedGraph(toInternal, toExternal, forward.bytes(), forward.samples,
+                backward.bytes(), backward.samples, forward.nArcs);
+    }
+
+    @Override
+    public int getNVertices() {
+        return toInternal.length;
+    }
+
+    /** @return number of arcs */
+    public long getNArcs() {
+        return nArcs;
+    }
+
+    /**
+     * @return memory used by the graph, in bytes (arrays payload only)
+     */
+    public long getMemoryBytes() {
+        long bytes = 4L * (toInternal.length + toExternal.length) + successors.length + 4L * successorSamples.length;
+        if (predecessors != successors) bytes += predecessors.length + 4L * predecessorSamples.length;
+        return bytes;
+    }
+
+    @Override
+    public void forEachSuccessor(int vertex, ArcVisitor visitor) {
+        decode(successors, successorSamples, toInternal[vertex], visitor);
+    }
+
+    @Override
+    public void forEachPredecessor(int vertex, ArcVisitor visitor) {
+        decode(predecessors, predecessorSamples, toInternal[vertex], visitor);
+    }
+
+    private void decode(byte[] data, int[] samples, int vertex, ArcVisitor visitor) {
+        int p = samples[vertex / SAMPLE_RATE];
+        for (int skip = vertex % SAMPLE_RATE; skip > 0; --skip) {
+            int degree = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[p++];
+                degree |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            for (int i = 0; i < 2 * degree; ++i) {
+                while (data[p++] < 0) ; // skip a varint
+            }
+        }
+        int degree = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[p++];
+            degree |= (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        int previous = vertex;
+        for (int i = 0; i < degree; ++i) {
+            long gap = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[p++];
+                gap |= (long) (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            int neighbour = i == 0 ? vertex + (int) ((gap >>> 1) ^ -(gap & 1)) : previous + (int) gap;
+            previous = neighbour;
+            long weight = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[p++];
+                weight |= (long) (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            visitor.visit(toExternal[neighbour], weight);
+        }
+    }
+
+    /**
+     * Builds a varint stream of adjacency lists, one vertex after the other
+     */
+    private static final class Encoder {
+        private final int[] toInternal;
+        private final int[] samples;
+        private byte[] data = new byte[1024];
+        private int size;
+        private long nArcs;
+        private int vertex;
+        private long[] arcs = new long[16]; // (internal neighbour << 32) | arc index
+        private long[] weights = new long[16];
+        private int degree;
+
+        Encoder(int n, int[] toInternal) {
+            this.toInternal = toInternal;
+            this.samples = new int[(n + SAMPLE_RATE - 1) / SAMPLE_RATE];
+        }
+
+        void begin(int vertex) {
+            this.vertex = vertex;
+            degree = 0;
+            if (vertex % SAMPLE_RATE == 0) samples[vertex / SAMPLE_RATE] = size;
+        }
+
+        void add(int neighbour, long weight) {
+            if (weight < 0)
+                throw new IllegalArgumentException("Negative weights are not supported");
+            if (degree == arcs.length) {
+                arcs = Arrays.copyOf(arcs, degree * 2);
+                weights = Arrays.copyOf(weights, degree * 2);
+            }
+            arcs[degree] = ((long) toInternal[neighbour] << 32) | degree;
+            weights[degree] = weight;
+            ++degree;
+        }
+
+        void end() {
+            Arrays.sort(arcs, 0, degree);
+            write(degree);
+            long previous = vertex;
+            for (int i = 0; i < degree; ++i) {
+                long neighbour = arcs[i] >>> 32;
+                long gap = neighbour - previous;
+                write(i == 0 ? (gap << 1) ^ (gap >> 63) : gap); // zigzag, only the first gap can be negative
+                write(weights[(int) arcs[i]]);
+                previous = neighbour;
+            }
+            nArcs += degree;
+        }
+
+        private void write(long value) {
+            if (size + 10 > data.length) {
+                if (data.length == Integer.MAX_VALUE - 8)
+                    throw new IllegalStateException("Compressed graph larger than 2 GB");
+                data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, 2L * data.length));
+            }
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        byte[] bytes() {
+            if (data.length != size) data = Arrays.copyOf(data, size);
+            return data;
+        }
+    }
+}
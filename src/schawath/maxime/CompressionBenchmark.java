@@ -0,0 +1,68 @@
+package schawath.maxime;
+
+import graph.core.impl.Digraph;
+import graph.core.impl.SimpleWeightedEdge;
+import graph.core.impl.SimpleWeightedEdgeFactory;
+import graph.reader.CartesianGraphReader;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the memory per arc and the query time of the {@link CompressedGraph} against the
+ * {@link Digraph} and the {@link CsrGraph} on the data sets.
+ * Usage: CompressionBenchmark [files...] (defaults to the files of data/)
+ */
+public class CompressionBenchmark {
+    private static final String DATA_FOLDER = "data/";
+    private static final int N_QUERIES = 500;
+
+    public static void main(String[] args) throws IOException {
+        String[] files = args.length > 0 ? args : new String[]{
+                DATA_FOLDER + "R4_1.txt", DATA_FOLDER + "R15_1.txt", DATA_FOLDER + "R10000_1.txt", DATA_FOLDER + "R50000_1.txt"};
+        System.out.println("file, arcs, digraphBytesPerArc, csrBytesPerArc, compressedBytesPerArc, digraphMs, csrMs, compressedMs, slowdown");
+        for (String file : files) {
+            long before = usedMemory();
+            Digraph<CartesianVertex, SimpleWeightedEdge<CartesianVertex>> digraph = new CartesianGraphReader<>(
+                    new CartesianVertexFactory(),
+                    new SimpleWeightedEdgeFactory<>(new CartesianEdgeWeighter()),
+                    file
+            ).graph();
+            long digraphBytes = usedMemory() - before;
+
+            CsrGraph csr = CsrGraph.of(digraph);
+            long csrBytes = 4L * (2 * (csr.getNVertices() + 1) + 3L * csr.getNArcs()) + csr.getWeights().getMemoryBytes();
+            CompressedGraph compressed = CompressedGraph.of(csr, VertexOrdering.hilbert(digraph.getVertices()), true);
+            long arcs = csr.getNArcs();
+
+            long digraphNs = time(new DigraphView<>(digraph));
+            long csrNs = time(csr);
+            long compressedNs = time(compressed);
+            System.out.printf("%s, %d, %.1f, %.1f, %.2f, %.1f, %.1f, %.1f, %.2f%n", file, arcs,
+                    (double) digraphBytes / arcs, (double) csrBytes / arcs, (double) compressed.getMemoryBytes() / arcs,
+                    digraphNs / 1e6, csrNs / 1e6, compressedNs / 1e6, (double) compressedNs / digraphNs);
+        }
+    }
+
+    /**
+     * @return time to run the same random queries (after a warmup round), in nanoseconds
+     */
+    private static long time(WeightedGraph graph) {
+        DijkstraBidirectionalConfigurable engine = new DijkstraBidirectionalConfigurable(graph, AlternationStrategy.SMALLER_RADIUS);
+        long start = 0;
+        for (int round = 0; round < 2; ++round) {
+            Random random = new Random(20220404);
+            start = System.nanoTime();
+            for (int i = 0; i < N_QUERIES; ++i) {
+                engine.run(random.nextInt(graph.getNVertices()), random.nextInt(graph.getNVertices()));
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
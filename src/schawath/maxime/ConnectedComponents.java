@@ -0,0 +1,167 @@
+package schawath.maxime;
+
+import graph.core.Edge;
+import graph.core.EdgeFactory;
+import graph.core.Vertex;
+
+import java.util.Arrays;
+
+/**
+ * Weakly connected components of a graph: a component id per vertex and the size of each component.
+ * Components are computed with a union-find (union by size, path halving, no recursion), either over
+ * the arcs of a {@link WeightedGraph} or while the edges are parsed: pass a {@link Builder} to
+ * {@link UndirectedGraph#read} or {@link WorkloadRunner#loadGraph(String, Builder)}, or give
+ * {@link graph.reader.CartesianGraphReader} the edge factory returned by {@link Builder#tracking}
+ * to get the components of a {@link graph.core.impl.Digraph} without a pass after loading.
+ * Two vertices in different components cannot reach each other, so the search engines answer such
+ * queries without searching. On a directed graph, vertices of the same weak component may still be
+ * unreachable; strong components are not computed since being in different strong components does
+ * not mean unreachable.
+ */
+public final class ConnectedComponents {
+    private final int[] componentOf;
+    private final int[] sizes;
+
+    private ConnectedComponents(int[] componentOf, int[] sizes) {
+        this.componentOf = componentOf;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Union-find over vertex ids, growing with the largest id seen
+     */
+    public static final class Builder {
+        private int[] parent = new int[0];
+        private int[] size = new int[0];
+        private int maxId = -1;
+
+        /**
+         * Merge the components of two vertices
+         *
+         * @param u - id of one vertex
+         * @param v - id of the other vertex
+         */
+        public void union(int u, int v) {
+            if (u < 0 || v < 0)
+                throw new IllegalArgumentException("Vertex id cannot be < 0");
+            maxId = Math.max(maxId, Math.max(u, v));
+            ensureCapacity(maxId + 1);
+            int ru = find(u), rv = find(v);
+            if (ru == rv) return;
+            if (size[ru] < size[rv]) {
+                int tmp = ru;
+                ru = rv;
+                rv = tmp;
+            }
+            parent[rv] = ru;
+            size[ru] += size[rv];
+        }
+
+        private int find(int v) {
+            while (parent[v] != v) {
+                parent[v] = parent[parent[v]]; // path halving
+                v = parent[v];
+            }
+            return v;
+        }
+
+        private void ensureCapacity(int capacity) {
+            int old = parent.length;
+            if (capacity <= old) return;
+            int length = Math.max(capacity, 2 * old);
+            parent = Arrays.copyOf(parent, length);
+            size = Arrays.copyOf(size, length);
+            for (int v = old; v < length; ++v) {
+                parent[v] = v;
+                size[v] = 1;
+            }
+        }
+
+        /**
+         * Wrap an edge factory so that each edge built also merges the components of its endpoints,
+         * to compute components while {@link graph.reader.CartesianGraphReader} parses the edges
+         *
+         * @param factory - the factory to wrap
+         * @return the tracking factory
+         */
+        public <V extends Vertex, E extends Edge<V>, D> EdgeFactory<V, E, D> tracking(EdgeFactory<V, E, D> factory) {
+            return (from, to, data) -> {
+                union(from.id(), to.id());
+                return factory.makeEdge(from, to, data);
+            };
+        }
+
+        /**
+         * Number the components
+         *
+         * @param nVertices - number of vertices of the graph (vertices without edges are alone in their component)
+         * @return the components
+         */
+        public ConnectedComponents build(int nVertices) {
+            if (maxId >= nVertices)
+                throw new IllegalArgumentException("An edge uses a vertex id >= " + nVertices);
+            ensureCapacity(nVertices);
+            int[] componentOf = new int[nVertices];
+            int[] rootComponent = new int[nVertices];
+            Arrays.fill(rootComponent, -1);
+            int[] sizes = new int[nVertices];
+            int nComponents = 0;
+            for (int v = 0; v < nVertices; ++v) {
+                int root = find(v);
+                if (rootComponent[root] == -1) rootComponent[root] = nComponents++;
+                componentOf[v] = rootComponent[root];
+                ++sizes[componentOf[v]];
+            }
+            return new ConnectedComponents(componentOf, Arrays.copyOf(sizes, nComponents));
+        }
+    }
+
+    /**
+     * Compute the components of a graph
+     *
+     * @param graph - the graph
+     * @return the components
+     */
+    public static ConnectedComponents of(WeightedGraph graph) {
+        Builder builder = new Builder();
+        for (int v = 0; v < graph.getNVertices(); ++v) {
+            int u = v;
+            graph.forEachSuccessor(u, (w, weight) -> builder.union(u, w));
+        }
+        return builder.build(graph.getNVertices());
+    }
+
+    /** @return number of vertices */
+    public int getNVertices() {
+        return componentOf.length;
+    }
+
+    /** @return number of components */
+    public int getNComponents() {
+        return sizes.length;
+    }
+
+    /** @return component id of a vertex, between 0 and {@link #getNComponents()} - 1 */
+    public int getComponent(int vertex) {
+        return componentOf[vertex];
+    }
+
+    /** @return number of vertices of a component */
+    public int getSize(int component) {
+        return sizes[component];
+    }
+
+    /** @return number of vertices of each component, indexed by component id */
+    public int[] getSizes() {
+        return sizes.clone();
+    }
+
+    /**
+     * @param u - id of one vertex
+     * @param v - id of the other vertex
+     * @return true if both vertices are in the same component
+     */
+    public boolean connected(int u, int v) {
+        return componentOf[u] == componentOf[v];
+    }
+}
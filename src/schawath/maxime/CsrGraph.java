@@ -0,0 +1,242 @@
+package schawath.maxime;
+
+import graph.core.Edge;
+import graph.core.EdgeWeighter;
+import graph.core.Vertex;
+import graph.core.impl.Digraph;
+import graph.core.impl.SimpleWeightedEdge;
+
+import java.util.List;
+
+/**
+ * Compressed sparse row (CSR) copy of a {@link Digraph}.
+ * Arcs are numbered from 0 to getNArcs() - 1 in successor list order, so that
+ * per-arc data (weights, masks, ...) can be stored in plain arrays.
+ * Both the forward (successors) and backward (predecessors) adjacency are indexed.
+ * Weights are kept as {@link EdgeWeights}, i.e. as int when they all fit.
+ * The topology is shared between instances created with {@link #withWeights(EdgeWeights)}.
+ */
+public final class CsrGraph implements WeightedGraph {
+    private final int[] firstOut; // arcs of u are in [firstOut[u], firstOut[u + 1])
+    private final int[] head;     // head (destination) of each arc
+    private final int[] tail;     // tail (origin) of each arc
+    private final int[] firstIn;  // reverse arcs of v are in [firstIn[v], firstIn[v + 1])
+    private final int[] inArc;    // arc id of each reverse arc
+    private final EdgeWeights weight; // weight of each arc
+
+    private CsrGraph(int[] firstOut, int[] head, int[] tail, int[] firstIn, int[] inArc, EdgeWeights weight) {
+        this.firstOut = firstOut;
+        this.head = head;
+        this.tail = tail;
+        this.firstIn = firstIn;
+        this.inArc = inArc;
+        this.weight = weight;
+    }
+
+    /**
+     * Build a CSR graph from a digraph, weighting each arc with the given function
+     * (in bulk for euclidean weights, see {@link EdgeWeights})
+     *
+     * @param graph    - the digraph to copy
+     * @param weighter - the weighting function
+     * @return the CSR graph
+     */
+    public static <V extends Vertex, E extends Edge<V>> CsrGraph of(Digraph<V, E> graph, EdgeWeighter<? super V> weighter) {
+        int n = graph.getNVertices();
+        int[] firstOut = new int[n + 1];
+        for (int u = 0; u < n; ++u) {
+            firstOut[u + 1] = firstOut[u] + graph.getSuccessorList(u).size();
+        }
+        int m = firstOut[n];
+        int[] head = new int[m];
+        int[] tail = new int[m];
+        int arc = 0;
+        for (int u = 0; u < n; ++u) {
+            for (E e : graph.getSuccessorList(u)) {
+                head[arc] = e.to().id();
+                tail[arc] = u;
+                ++arc;
+            }
+        }
+        return fromArcs(n, firstOut, head, tail, EdgeWeights.compute(graph.getVertices(), weighter, tail, head));
+    }
+
+    /**
+     * Build a CSR graph from a digraph of weighted edges, keeping the edge weights
+     *
+     * @param graph - the digraph to copy
+     * @return the CSR graph
+     */
+    public static <V extends Vertex> CsrGraph of(Digraph<V, SimpleWeightedEdge<V>> graph) {
+        int n = graph.getNVertices();
+        int[] firstOut = new int[n + 1];
+        for (int u = 0; u < n; ++u) {
+            firstOut[u + 1] = firstOut[u] + graph.getSuccessorList(u).size();
+        }
+        int m = firstOut[n];
+        int[] head = new int[m];
+        int[] tail = new int[m];
+        long[] weight = new long[m];
+        int arc = 0;
+        for (int u = 0; u < n; ++u) {
+            for (SimpleWeightedEdge<V> e : graph.getSuccessorList(u)) {
+                head[arc] = e.to().id();
+                tail[arc] = u;
+                weight[arc] = e.weight();
+                ++arc;
+            }
+        }
+        return fromArcs(n, firstOut, head, tail, EdgeWeights.of(weight));
+    }
+
+    /**
+     * Build the backward index of a forward CSR
+     */
+    static CsrGraph fromArcs(int n, int[] firstOut, int[] head, int[] tail, long[] weight) {
+        return fromArcs(n, firstOut, head, tail, EdgeWeights.of(weight));
+    }
+
+    /**
+     * Build the backward index of a forward CSR
+     */
+    static CsrGraph fromArcs(int n, int[] firstOut, int[] head, int[] tail, EdgeWeights weight) {
+        int[] firstIn = new int[n + 1];
+        for (int v : head) {
+            ++firstIn[v + 1];
+        }
+        for (int v = 0; v < n; ++v) {
+            firstIn[v + 1] += firstIn[v];
+        }
+        int[] inArc = new int[head.length];
+        int[] next = firstIn.clone();
+        for (int arc = 0; arc < head.length; ++arc) {
+            inArc[next[head[arc]]++] = arc;
+        }
+        return new CsrGraph(firstOut, head, tail, firstIn, inArc, weight);
+    }
+
+    /**
+     * Weight all arcs of the graph with a new function, sharing the topology
+     * (in bulk for euclidean weights, see {@link EdgeWeights})
+     *
+     * @param vertices - the vertices, indexed by id
+     * @param weighter - the weighting function
+     * @return the new weights, indexed by arc id
+     */
+    public <V extends Vertex> EdgeWeights computeWeights(List<V> vertices, EdgeWeighter<? super V> weighter) {
+        return EdgeWeights.compute(vertices, weighter, tail, head);
+    }
+
+    /**
+     * Create a graph with the same topology but other weights
+     *
+     * @param weights - the new weights, indexed by arc id
+     * @return a graph sharing the topology of this one
+     */
+    public CsrGraph withWeights(long[] weights) {
+        return withWeights(EdgeWeights.of(weights));
+    }
+
+    /**
+     * Create a graph with the same topology but other weights
+     *
+     * @param weights - the new weights, indexed by arc id
+     * @return a graph sharing the topology of this one
+     */
+    public CsrGraph withWeights(EdgeWeights weights) {
+        if (weights.size() != head.length)
+            throw new IllegalArgumentException("Expected " + head.length + " weights, got " + weights.size());
+        return new CsrGraph(firstOut, head, tail, firstIn, inArc, weights);
+    }
+
+    @Override
+    public int getNVertices() {
+        return firstOut.length - 1;
+    }
+
+    @Override
+    public void forEachSuccessor(int vertex, ArcVisitor visitor) {
+        for (int arc = firstOut[vertex]; arc < firstOut[vertex + 1]; ++arc) {
+            visitor.visit(head[arc], weight.get(arc));
+        }
+    }
+
+    @Override
+    public void forEachPredecessor(int vertex, ArcVisitor visitor) {
+        for (int i = firstIn[vertex]; i < firstIn[vertex + 1]; ++i) {
+            visitor.visit(tail[inArc[i]], weight.get(inArc[i]));
+        }
+    }
+
+    /** @return number of arcs */
+    public int getNArcs() {
+        return head.length;
+    }
+
+    /** @return first outgoing arc id of the vertex */
+    public int firstOut(int vertex) {
+        return firstOut[vertex];
+    }
+
+    /** @return last outgoing arc id (exclusive) of the vertex */
+    public int endOut(int vertex) {
+        return firstOut[vertex + 1];
+    }
+
+    /** @return first reverse arc index of the vertex, to use with {@link #inArc(int)} */
+    public int firstIn(int vertex) {
+        return firstIn[vertex];
+    }
+
+    /** @return last reverse arc index (exclusive) of the vertex */
+    public int endIn(int vertex) {
+        return firstIn[vertex + 1];
+    }
+
+    /** @return the arc id stored at the given reverse arc index */
+    public int inArc(int index) {
+        return inArc[index];
+    }
+
+    /** @return destination of the arc */
+    public int head(int arc) {
+        return head[arc];
+    }
+
+    /** @return origin of the arc */
+    public int tail(int arc) {
+        return tail[arc];
+    }
+
+    /** @return weight of the arc */
+    public long weight(int arc) {
+        return weight.get(arc);
+    }
+
+    /** @return weight of each arc, indexed by arc id */
+    public EdgeWeights getWeights() {
+        return weight;
+    }
+
+    /** @return head of each arc, indexed by arc id (the array is not copied, for batch processing) */
+    int[] heads() {
+        return head;
+    }
+
+    /**
+     * Find the arc from one vertex to another
+     *
+     * @param from - the origin vertex id
+     * @param to   - the destination vertex id
+     * @return the lightest arc id, or -1 if there is none
+     */
+    public int findArc(int from, int to) {
+        int best = -1;
+        for (int arc = firstOut[from]; arc < firstOut[from + 1]; ++arc) {
+            if (head[arc] == to && (best == -1 || weight.get(arc) < weight.get(best))) {
+                best = arc;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,41 @@
+package schawath.maxime;
+
+import graph.core.Vertex;
+import graph.core.impl.Digraph;
+import graph.core.impl.SimpleWeightedEdge;
+
+/**
+ * {@link WeightedGraph} view of a {@link Digraph} of {@link SimpleWeightedEdge}.
+ * Digraphs built by {@link graph.reader.CartesianGraphReader} describe undirected graphs
+ * (every edge exists in both directions), so the predecessors of a vertex are its successors,
+ * as {@link DijkstraBidirectional} has always assumed.
+ *
+ * @param <V> Vertex type
+ */
+public final class DigraphView<V extends Vertex> implements WeightedGraph {
+    private final Digraph<V, SimpleWeightedEdge<V>> graph;
+
+    /**
+     * @param graph - the symmetric digraph to view
+     */
+    public DigraphView(Digraph<V, SimpleWeightedEdge<V>> graph) {
+        this.graph = graph;
+    }
+
+    @Override
+    public int getNVertices() {
+        return graph.getNVertices();
+    }
+
+    @Override
+    public void forEachSuccessor(int vertex, ArcVisitor visitor) {
+        for (SimpleWeightedEdge<V> e : graph.getSuccessorList(vertex)) {
+            visitor.visit(e.to().id(), e.weight());
+        }
+    }
+
+    @Override
+    public void forEachPredecessor(int vertex, ArcVisitor visitor) {
+        forEachSuccessor(vertex, visitor);
+    }
+}
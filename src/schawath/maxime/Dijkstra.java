@@ -1,5 +1,6 @@
 package schawath.maxime;
 
+import graph.core.Vertex;
 import graph.core.impl.Digraph;
 import graph.core.impl.SimpleWeightedEdge;
 
@@ -7,17 +8,53 @@ import java.util.*;
 
 /**
  * Dijkstra algorithm simple version
- *
- * @param <V> Vertex type
- * @param <D> Digraph type
  */
-public class Dijkstra<V extends CartesianVertex, D extends Digraph<V, SimpleWeightedEdge<V>>> {
-    private final D graph;
+public class Dijkstra {
+    private final WeightedGraph graph;
+    private final ConnectedComponents components; // null if not known
     private int steps;
     private int nbVisited;
 
-    public Dijkstra(D graph) {
+    /**
+     * Create a new Dijkstra instance
+     *
+     * @param graph - the graph to use
+     */
+    public Dijkstra(WeightedGraph graph) {
+        this(graph, null);
+    }
+
+    /**
+     * Create a new Dijkstra instance answering queries between different components without searching
+     *
+     * @param graph      - the graph to use
+     * @param components - the connected components of the graph
+     */
+    public Dijkstra(WeightedGraph graph, ConnectedComponents components) {
+        if (components != null && components.getNVertices() != graph.getNVertices())
+            throw new IllegalArgumentException("Components do not match the graph size");
         this.graph = graph;
+        this.components = components;
+    }
+
+    /**
+     * Create a new Dijkstra instance
+     *
+     * @param graph - the digraph to use
+     */
+    public <V extends Vertex> Dijkstra(Digraph<V, SimpleWeightedEdge<V>> graph) {
+        this(new DigraphView<>(graph));
+    }
+
+    /**
+     * Create a new Dijkstra instance answering queries between different components without searching
+     *
+     * @param graph      - the digraph to use
+     * @param components - the connected components of the graph, e.g. tracked while reading it, see
+     *                   {@link ConnectedComponents.Builder#tracking}
+     */
+    public <V extends Vertex> Dijkstra(Digraph<V, SimpleWeightedEdge<V>> graph, ConnectedComponents components) {
+        this(new DigraphView<>(graph), components);
     }
 
     /**
@@ -28,6 +65,7 @@ public class Dijkstra<V extends CartesianVertex, D extends Digraph<V, SimpleWeig
      * @return the result of the algorithm
      */
     public DijkstraResult run(int from, int to) {
+        if (components != null && !components.connected(from, to)) return DijkstraResult.unreachable(from, to);
         // Initialize all variables to their default values
         nbVisited = 0;
         steps = 0;
@@ -37,33 +75,34 @@ public class Dijkstra<V extends CartesianVertex, D extends Digraph<V, SimpleWeig
         Arrays.fill(p, -1);
         distance[from] = 0;
         boolean[] queueBoolean = new boolean[graph.getNVertices()];
-        Queue<CartesianVertex> queue = new PriorityQueue<>(Comparator.comparingDouble(v -> distance[v.id()]));
+        Queue<Integer> queue = new PriorityQueue<>(Comparator.comparingDouble(v -> distance[v]));
         Arrays.fill(queueBoolean, true);
-        queue.addAll(graph.getVertices());
+        for (int v = 0; v < graph.getNVertices(); ++v) {
+            queue.add(v);
+        }
 
         while (!queue.isEmpty()) {
             //get the vertex with the smallest distance
-            CartesianVertex vi = queue.poll();
+            int vi = queue.poll();
             nbVisited++; //increment the number of visited nodes (for statistics)
-            queueBoolean[vi.id()] = false;
-            if (distance[vi.id()] == Double.POSITIVE_INFINITY) {
+            queueBoolean[vi] = false;
+            if (distance[vi] == Double.POSITIVE_INFINITY) {
                 break;
             }
             //for each neighbor of u
-            for (SimpleWeightedEdge<V> ej : graph.getSuccessorList(vi.id())) {
+            graph.forEachSuccessor(vi, (vj, weight) -> {
                 ++steps; //increment the number of steps (for statistics)
-                V vj = ej.to();
-                if (queueBoolean[vj.id()] && distance[vj.id()] > distance[vi.id()] + ej.weight()) {
-                    distance[vj.id()] = distance[vi.id()] + ej.weight();
-                    p[vj.id()] = vi.id();
+                if (queueBoolean[vj] && distance[vj] > distance[vi] + weight) {
+                    distance[vj] = distance[vi] + weight;
+                    p[vj] = vi;
                     queue.remove(vj); // trick to update the queue
                     queue.add(vj);
                 }
-            }
-            if (vi.id() == to) break;
+            });
+            if (vi == to) break;
         }
-        // create the path
-        int cS = to;
+        // create the path (empty if unreachable, as when components short-circuit the query)
+        int cS = distance[to] == Double.POSITIVE_INFINITY ? -1 : to;
         LinkedList<Integer> s = new LinkedList<>();
         while (cS != -1) { // while we are not at the beginning
             s.add(0, cS); // add the current vertex to the path
@@ -0,0 +1,240 @@
+package schawath.maxime;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Alternative routes with the plateau method.
+ * A forward shortest path tree from the source and a backward one to the target are
+ * kept in full (bounded by the maximum stretch), as opposed to {@link DijkstraBidirectional}
+ * which stops and discards them once the two searches meet.
+ * A plateau is a maximal chain of arcs that belong to both trees; every plateau gives a
+ * via route "forward tree to the plateau end, then backward tree to the target" whose
+ * plateau part is a shortest path, so the route is locally optimal on at least the
+ * plateau length.
+ * Candidates are filtered and scored by length stretch, overlap with the routes already
+ * selected and local optimality (plateau length over route length).
+ * An instance reuses its search workspaces and must not be shared between threads.
+ */
+public class DijkstraAlternatives {
+    private final CsrGraph graph;
+    private final SearchWorkspace forward;
+    private final SearchWorkspace backward;
+    private final int[] forwardArc;   // arc from the predecessor in the forward tree
+    private final int[] backwardArc;  // arc to the successor in the backward tree
+    private final boolean[] selectedArc;
+    private final int[] common;       // vertices settled in both trees, gathered by the backward search
+    private int nCommon;
+    private final double maxStretch;
+    private final double maxOverlap;
+    private final double minLocalOptimality;
+    private int steps;
+    private int nbVisited;
+
+    /**
+     * Create a new DijkstraAlternatives instance with common thresholds:
+     * 25% longer at most, 80% overlap at most, plateau of at least 25% of the route
+     *
+     * @param graph - the graph to use
+     */
+    public DijkstraAlternatives(CsrGraph graph) {
+        this(graph, 1.25, 0.8, 0.25);
+    }
+
+    /**
+     * Create a new DijkstraAlternatives instance
+     *
+     * @param graph              - the graph to use
+     * @param maxStretch         - maximum length of an alternative relative to the shortest path (e.g. 1.25)
+     * @param maxOverlap         - maximum fraction of an alternative shared with the selected routes
+     * @param minLocalOptimality - minimum fraction of an alternative covered by its plateau
+     */
+    public DijkstraAlternatives(CsrGraph graph, double maxStretch, double maxOverlap, double minLocalOptimality) {
+        if (maxStretch < 1)
+            throw new IllegalArgumentException("maxStretch cannot be < 1");
+        this.graph = graph;
+        this.maxStretch = maxStretch;
+        this.maxOverlap = maxOverlap;
+        this.minLocalOptimality = minLocalOptimality;
+        int n = graph.getNVertices();
+        forward = new SearchWorkspace(n);
+        backward = new SearchWorkspace(n);
+        forwardArc = new int[n];
+        backwardArc = new int[n];
+        selectedArc = new boolean[graph.getNArcs()];
+        common = new int[n];
+    }
+
+    /**
+     * Run the algorithm
+     *
+     * @param from            - the source vertex id
+     * @param to              - the destination vertex id
+     * @param maxAlternatives - the maximum number of alternatives
+     * @return the shortest path followed by at most maxAlternatives alternatives,
+     * best first, empty if the destination is unreachable
+     */
+    public List<DijkstraResult> run(int from, int to, int maxAlternatives) {
+        steps = 0;
+        nbVisited = 0;
+        List<DijkstraResult> results = new ArrayList<>();
+
+        forward.reset();
+        forward.relax(from, 0, -1);
+        forwardArc[from] = -1;
+        growTree(forward, forwardArc, to, true, Long.MAX_VALUE);
+        if (!forward.isSettled(to)) return results;
+        long shortest = forward.getDistance(to);
+        long bound = (long) Math.floor(shortest * maxStretch);
+        growTree(forward, forwardArc, -1, true, bound); // resume up to the stretch bound
+        backward.reset();
+        backward.relax(to, 0, -1);
+        backwardArc[to] = -1;
+        nCommon = 0;
+        growTree(backward, backwardArc, -1, false, bound);
+
+        // plateau ends: vertices whose forward tree arc is a backward tree arc,
+        // but whose own backward tree arc is not a forward tree arc
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < nCommon; ++i) {
+            int end = common[i];
+            if (end == to) continue;
+            int in = forwardArc[end];
+            if (in == -1 || backwardArc[graph.tail(in)] != in) continue;
+            int out = backwardArc[end];
+            if (out != -1 && forwardArc[graph.head(out)] == out) continue;
+            long length = forward.getDistance(end) + backward.getDistance(end);
+            if (length > bound) continue;
+            int start = end;
+            while (forwardArc[start] != -1 && backwardArc[graph.tail(forwardArc[start])] == forwardArc[start]) {
+                start = graph.tail(forwardArc[start]);
+            }
+            candidates.add(new Candidate(end, length, forward.getDistance(end) - forward.getDistance(start)));
+        }
+        candidates.sort(Comparator.comparingLong((Candidate c) -> -c.plateau).thenComparingInt(c -> c.via));
+
+        List<Integer> shortestPath = path(from, to, to);
+        mark(shortestPath, true);
+        results.add(toResult(from, to, shortest, shortestPath));
+
+        while (results.size() <= maxAlternatives) {
+            Candidate best = null;
+            double bestScore = Double.POSITIVE_INFINITY;
+            for (Candidate c : candidates) {
+                if (c.selected || (double) c.plateau / c.length < minLocalOptimality) continue;
+                double overlap = (double) overlap(c, from, to) / c.length;
+                if (overlap > maxOverlap) continue;
+                // shorter, less shared and more locally optimal routes are better
+                double score = 2.0 * c.length / shortest + overlap - (double) c.plateau / c.length;
+                if (score < bestScore) {
+                    bestScore = score;
+                    best = c;
+                }
+            }
+            if (best == null) break;
+            best.selected = true;
+            List<Integer> p = path(from, to, best.via);
+            if (new HashSet<>(p).size() != p.size()) continue; // both trees cross, not a simple path
+            mark(p, true);
+            results.add(toResult(from, to, best.length, p));
+        }
+        for (DijkstraResult r : results) mark(r.getVerticesList(), false);
+        return results;
+    }
+
+    /**
+     * Grow a shortest path tree until the target is settled (if any) or the distance exceeds the bound.
+     * The backward tree is grown once the forward one is complete, so it gathers the vertices settled
+     * in both trees, the only plateau candidates
+     */
+    private void growTree(SearchWorkspace ws, int[] treeArc, int target, boolean isForward, long bound) {
+        IndexedMinHeap queue = ws.queue();
+        while (!queue.isEmpty() && queue.minKey() <= bound) {
+            int u = queue.poll();
+            nbVisited++;
+            if (!isForward && forward.isSettled(u)) common[nCommon++] = u;
+            long du = ws.getDistance(u);
+            int first = isForward ? graph.firstOut(u) : graph.firstIn(u);
+            int end = isForward ? graph.endOut(u) : graph.endIn(u);
+            for (int k = first; k < end; ++k) {
+                ++steps;
+                int arc = isForward ? k : graph.inArc(k);
+                int v = isForward ? graph.head(arc) : graph.tail(arc);
+                if (ws.relax(v, du + graph.weight(arc), u)) treeArc[v] = arc;
+            }
+            if (u == target) return;
+        }
+    }
+
+    /**
+     * @return the route following the forward tree to the via vertex, then the backward tree
+     */
+    private List<Integer> path(int from, int to, int via) {
+        LinkedList<Integer> p = new LinkedList<>();
+        for (int v = via; v != from; v = graph.tail(forwardArc[v])) {
+            p.addFirst(v);
+        }
+        p.addFirst(from);
+        for (int v = via; v != to; ) {
+            v = graph.head(backwardArc[v]);
+            p.addLast(v);
+        }
+        return p;
+    }
+
+    /**
+     * @return the length of the candidate route on arcs of already selected routes
+     */
+    private long overlap(Candidate c, int from, int to) {
+        long shared = 0;
+        for (int v = c.via; v != from; v = graph.tail(forwardArc[v])) {
+            if (selectedArc[forwardArc[v]]) shared += graph.weight(forwardArc[v]);
+        }
+        for (int v = c.via; v != to; v = graph.head(backwardArc[v])) {
+            if (selectedArc[backwardArc[v]]) shared += graph.weight(backwardArc[v]);
+        }
+        return shared;
+    }
+
+    private void mark(List<Integer> path, boolean value) {
+        int previous = -1;
+        for (int v : path) {
+            if (previous != -1) {
+                int arc = graph.findArc(previous, v);
+                selectedArc[arc] = value;
+                // undirected graphs store both directions, an overlap in the opposite direction is still shared
+                int reverse = graph.findArc(v, previous);
+                if (reverse != -1) selectedArc[reverse] = value;
+            }
+            previous = v;
+        }
+    }
+
+    private DijkstraResult toResult(int from, int to, long distance, List<Integer> path) {
+        return new DijkstraResult(steps, nbVisited, distance, path) {
+            @Override
+            void print() {
+                System.out.println("From " + from + " to " + to + " : " + getDistance() + " " + getVerticesList() + " in " + getSteps() + " steps and " + getNbVisited() + " nodes visited");
+            }
+        };
+    }
+
+    /**
+     * A via route through the end of a plateau
+     */
+    private static final class Candidate {
+        private final int via;
+        private final long length;
+        private final long plateau;
+        private boolean selected;
+
+        Candidate(int via, long length, long plateau) {
+            this.via = via;
+            this.length = length;
+            this.plateau = plateau;
+        }
+    }
+}
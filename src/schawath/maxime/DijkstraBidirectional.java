@@ -1,5 +1,6 @@
 package schawath.maxime;
 
+import graph.core.Vertex;
 import graph.core.impl.Digraph;
 import graph.core.impl.SimpleWeightedEdge;
 
@@ -7,12 +8,11 @@ import java.util.*;
 
 /**
  * Dijkstra algorithm bidirectional version
- *
- * @param <V> Vertex type
- * @param <D> Digraph type
+ * The backward search follows the predecessors given by the graph
  */
-public class DijkstraBidirectional<V extends CartesianVertex, D extends Digraph<V, SimpleWeightedEdge<V>>> {
-    private final D graph;
+public class DijkstraBidirectional {
+    private final WeightedGraph graph;
+    private final ConnectedComponents components; // null if not known
 
     private double mu;
     private int steps;
@@ -23,8 +23,41 @@ public class DijkstraBidirectional<V extends CartesianVertex, D extends Digraph<
      *
      * @param graph - the graph to use
      */
-    public DijkstraBidirectional(D graph) {
+    public DijkstraBidirectional(WeightedGraph graph) {
+        this(graph, null);
+    }
+
+    /**
+     * Create a new DijkstraBidirectional instance answering queries between different components without searching
+     *
+     * @param graph      - the graph to use
+     * @param components - the connected components of the graph
+     */
+    public DijkstraBidirectional(WeightedGraph graph, ConnectedComponents components) {
+        if (components != null && components.getNVertices() != graph.getNVertices())
+            throw new IllegalArgumentException("Components do not match the graph size");
         this.graph = graph;
+        this.components = components;
+    }
+
+    /**
+     * Create a new DijkstraBidirectional instance
+     *
+     * @param graph - the digraph to use, which must be symmetric
+     */
+    public <V extends Vertex> DijkstraBidirectional(Digraph<V, SimpleWeightedEdge<V>> graph) {
+        this(new DigraphView<>(graph));
+    }
+
+    /**
+     * Create a new DijkstraBidirectional instance answering queries between different components without searching
+     *
+     * @param graph      - the digraph to use, which must be symmetric
+     * @param components - the connected components of the graph, e.g. tracked while reading it, see
+     *                   {@link ConnectedComponents.Builder#tracking}
+     */
+    public <V extends Vertex> DijkstraBidirectional(Digraph<V, SimpleWeightedEdge<V>> graph, ConnectedComponents components) {
+        this(new DigraphView<>(graph), components);
     }
 
     /**
@@ -37,29 +70,33 @@ public class DijkstraBidirectional<V extends CartesianVertex, D extends Digraph<
     private boolean step(DijkstraContext ctx, DijkstraContext ctx2) {
         //get the vertex with the smallest distance
         if (ctx.isQueueEmpty()) return false;
-        CartesianVertex vi = ctx.pollQueue();
+        int vi = ctx.pollQueue();
         nbVisited++; //increment the number of visited nodes for statistics
-        if (ctx.getDelta(vi.id()) == Double.POSITIVE_INFINITY) {
+        if (ctx.getDelta(vi) == Double.POSITIVE_INFINITY) {
             return false;
         }
-        //for each neighbor of u
-        for (SimpleWeightedEdge<V> ej : graph.getSuccessorList(vi.id())) {
+        //for each neighbor of u (predecessors for the backward search)
+        WeightedGraph.ArcVisitor relax = (vj, weight) -> {
             ++steps; //increment the number of steps for statistics
-            V vj = ej.to();
-            if (ctx.isInQueue(vj.id()) && ctx.getDelta(vj.id()) > ctx.getDelta(vi.id()) + ej.weight()) {
-                ctx.setDelta(vj.id(), ctx.getDelta(vi.id()) + ej.weight());
-                ctx.setPredecessor(vj.id(), vi.id());
+            if (ctx.isInQueue(vj) && ctx.getDelta(vj) > ctx.getDelta(vi) + weight) {
+                ctx.setDelta(vj, ctx.getDelta(vi) + weight);
+                ctx.setPredecessor(vj, vi);
                 ctx.updateQueue(vj);
             }
             //mu update
             double m;
-            if (!ctx2.isInQueue(vj.id()) && mu > (m = ctx.getDelta(vi.id()) + ctx2.getDelta(vj.id()) + ej.weight())) {
+            if (!ctx2.isInQueue(vj) && mu > (m = ctx.getDelta(vi) + ctx2.getDelta(vj) + weight)) {
                 mu = m;
-                ctx.setSubTo(vi.id()); // update the sub-to node used to construct the path
+                ctx.setSubTo(vi); // update the sub-to node used to construct the path
             }
+        };
+        if (ctx.isForward()) {
+            graph.forEachSuccessor(vi, relax);
+        } else {
+            graph.forEachPredecessor(vi, relax);
         }
-        if (!ctx2.isInQueue(vi.id())) {
-            ctx.setSubTo(vi.id()); // update the sub-to node used to construct the path
+        if (!ctx2.isInQueue(vi)) {
+            ctx.setSubTo(vi); // update the sub-to node used to construct the path
             return false;
         }
         return true;
@@ -95,16 +132,19 @@ public class DijkstraBidirectional<V extends CartesianVertex, D extends Digraph<
      * @return the result of the algorithm
      */
     public DijkstraResult run(int from, int to) {
+        if (components != null && !components.connected(from, to)) return DijkstraResult.unreachable(from, to);
         //initialize the main variables
         steps = 0;
         nbVisited = 0;
         mu = Double.POSITIVE_INFINITY;
-        DijkstraContext forward = new DijkstraContext(from, to); // forward context
-        DijkstraContext backward = new DijkstraContext(to, from); // backward context
+        DijkstraContext forward = new DijkstraContext(from, to, true); // forward context
+        DijkstraContext backward = new DijkstraContext(to, from, false); // backward context
         // used to alternate between the two contexts ( if one is finished, the other is cancelled )
         while (step(forward, backward) && step(backward, forward)) ;
         //create the result object
-        return new DijkstraResult(steps, nbVisited, mu, merge(forward, backward)) {
+        // empty path if unreachable, as when components short-circuit the query
+        List<Integer> path = mu == Double.POSITIVE_INFINITY ? Collections.emptyList() : merge(forward, backward);
+        return new DijkstraResult(steps, nbVisited, mu, path) {
             @Override
             void print() {
                 System.out.println("From " + from + " to " + to + " : " + getDistance() + " " + getVerticesList() + " in " + getSteps() + " steps and " + getNbVisited() + " nodes visited");
@@ -123,7 +163,8 @@ public class DijkstraBidirectional<V extends CartesianVertex, D extends Digraph<
         private final int[] predecessors;
 
         private final boolean[] visited;
-        private final Queue<V> queue;
+        private final Queue<Integer> queue;
+        private final boolean isForward;
         private int subTo;
 
         /**
@@ -131,19 +172,30 @@ public class DijkstraBidirectional<V extends CartesianVertex, D extends Digraph<
          *
          * @param fromVertex - the source vertex id
          * @param toVertex   - the destination vertex id
+         * @param forward    - true to follow successors, false to follow predecessors
          */
-        DijkstraContext(int fromVertex, int toVertex) {
+        DijkstraContext(int fromVertex, int toVertex, boolean forward) {
             from = fromVertex;
             to = toVertex;
+            isForward = forward;
             delta = new double[graph.getNVertices()];
             predecessors = new int[graph.getNVertices()];
             visited = new boolean[graph.getNVertices()];
             Arrays.fill(delta, Double.POSITIVE_INFINITY); // set all delta to infinity
             Arrays.fill(predecessors, -1); // set all predecessors to -1
             Arrays.fill(visited, true); // set all visited to true
-            queue = new PriorityQueue<>(Comparator.comparingDouble(v -> delta[v.id()])); // create the queue
+            queue = new PriorityQueue<>(Comparator.comparingDouble(v -> delta[v])); // create the queue
             delta[from] = 0; // set the delta of the source to 0
-            queue.addAll(graph.getVertices()); // add all vertices to the queue
+            for (int v = 0; v < graph.getNVertices(); ++v) {
+                queue.add(v); // add all vertices to the queue
+            }
+        }
+
+        /**
+         * @return true if the context searches forward, false if backward
+         */
+        public boolean isForward() {
+            return isForward;
         }
 
         /**
@@ -170,21 +222,19 @@ public class DijkstraBidirectional<V extends CartesianVertex, D extends Digraph<
          *
          * @return the vertex which is the head of the queue
          */
-        public CartesianVertex pollQueue() {
-            V v = queue.poll();
-            if (v != null) {
-                // mark the vertex as is not in the queue anymore
-                visited[v.id()] = false;
-            }
+        public int pollQueue() {
+            int v = queue.poll();
+            // mark the vertex as is not in the queue anymore
+            visited[v] = false;
             return v;
         }
 
         /**
          * Fix the queue after a vertex has been changed
          *
-         * @param vertex - the vertex which has been changed
+         * @param vertex - the vertex id which has been changed
          */
-        public void updateQueue(V vertex) {
+        public void updateQueue(int vertex) {
             queue.remove(vertex);
             queue.add(vertex);
         }
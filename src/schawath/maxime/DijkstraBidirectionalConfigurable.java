@@ -0,0 +1,157 @@
+package schawath.maxime;
+
+import java.util.EnumMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Dijkstra algorithm bidirectional version, with a tighter stopping criterion and a
+ * configurable alternation between both directions.
+ * Unlike {@link DijkstraBidirectional}, which stops once a vertex is settled in both
+ * directions, the search stops as soon as the sum of the smallest distances of both
+ * queues reaches mu, the length of the best path found so far: no path through a
+ * vertex still in a queue can be shorter.
+ * An instance reuses its search workspaces and must not be shared between threads.
+ */
+public class DijkstraBidirectionalConfigurable {
+    private final WeightedGraph graph;
+    private final AlternationStrategy strategy;
+    private final ConnectedComponents components; // null if not known
+    private final SearchWorkspace forward;
+    private final SearchWorkspace backward;
+
+    private long mu;
+    private int meeting;
+    private int steps;
+    private int nbVisited;
+
+    /**
+     * Create a new DijkstraBidirectionalConfigurable instance
+     *
+     * @param graph    - the graph to use
+     * @param strategy - the alternation strategy
+     */
+    public DijkstraBidirectionalConfigurable(WeightedGraph graph, AlternationStrategy strategy) {
+        this(graph, strategy, null);
+    }
+
+    /**
+     * Create a new DijkstraBidirectionalConfigurable instance answering queries between different
+     * components without searching
+     *
+     * @param graph      - the graph to use
+     * @param strategy   - the alternation strategy
+     * @param components - the connected components of the graph
+     */
+    public DijkstraBidirectionalConfigurable(WeightedGraph graph, AlternationStrategy strategy,
+                                             ConnectedComponents components) {
+        if (components != null && components.getNVertices() != graph.getNVertices())
+            throw new IllegalArgumentException("Components do not match the graph size");
+        this.graph = graph;
+        this.strategy = strategy;
+        this.components = components;
+        forward = new SearchWorkspace(graph.getNVertices());
+        backward = new SearchWorkspace(graph.getNVertices());
+    }
+
+    /**
+     * Run the same query with every strategy, to compare the work they need
+     *
+     * @param graph - the graph to use
+     * @param from  - the source vertex id
+     * @param to    - the destination vertex id
+     * @return the result of each strategy
+     */
+    public static Map<AlternationStrategy, DijkstraResult> compareStrategies(WeightedGraph graph, int from, int to) {
+        Map<AlternationStrategy, DijkstraResult> results = new EnumMap<>(AlternationStrategy.class);
+        for (AlternationStrategy s : AlternationStrategy.values()) {
+            results.put(s, new DijkstraBidirectionalConfigurable(graph, s).run(from, to));
+        }
+        return results;
+    }
+
+    /**
+     * Run the algorithm
+     *
+     * @param from - the source vertex id
+     * @param to   - the destination vertex id
+     * @return the result of the algorithm, with an empty path if the destination is unreachable
+     */
+    public DijkstraResult run(int from, int to) {
+        if (components != null && !components.connected(from, to)) return DijkstraResult.unreachable(from, to);
+        steps = 0;
+        nbVisited = 0;
+        mu = from == to ? 0 : Long.MAX_VALUE;
+        meeting = from == to ? from : -1;
+        forward.reset();
+        backward.reset();
+        forward.relax(from, 0, -1);
+        backward.relax(to, 0, -1);
+        IndexedMinHeap fq = forward.queue(), bq = backward.queue();
+
+        boolean isForward = false;
+        while (!fq.isEmpty() && !bq.isEmpty() && fq.minKey() + bq.minKey() < mu) {
+            switch (strategy) {
+                case STRICT:
+                    isForward = !isForward;
+                    break;
+                case SMALLER_QUEUE:
+                    isForward = fq.size() <= bq.size();
+                    break;
+                case SMALLER_RADIUS:
+                    isForward = fq.minKey() <= bq.minKey();
+                    break;
+            }
+            if (isForward) {
+                step(forward, backward, true);
+            } else {
+                step(backward, forward, false);
+            }
+        }
+
+        LinkedList<Integer> path = new LinkedList<>();
+        if (meeting != -1) {
+            for (int v = meeting; v != -1; v = forward.getPredecessor(v)) {
+                path.addFirst(v);
+            }
+            for (int v = backward.getPredecessor(meeting); v != -1; v = backward.getPredecessor(v)) {
+                path.addLast(v);
+            }
+        }
+        double distance = mu == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : mu;
+        return new DijkstraResult(steps, nbVisited, distance, path) {
+            @Override
+            void print() {
+                System.out.println("[" + strategy + "] From " + from + " to " + to + " : " + getDistance() + " " + getVerticesList() + " in " + getSteps() + " steps and " + getNbVisited() + " nodes visited");
+            }
+        };
+    }
+
+    /**
+     * Settle the head of a queue and relax its arcs, updating mu
+     *
+     * @param ws        - the workspace of the advancing direction
+     * @param other     - the workspace of the other direction
+     * @param isForward - true to follow successors, false to follow predecessors
+     */
+    private void step(SearchWorkspace ws, SearchWorkspace other, boolean isForward) {
+        int u = ws.queue().poll();
+        nbVisited++;
+        long du = ws.getDistance(u);
+        WeightedGraph.ArcVisitor relax = (v, weight) -> {
+            ++steps;
+            long dv = du + weight;
+            ws.relax(v, dv, u);
+            long dOther = other.getDistance(v);
+            if (dOther != Long.MAX_VALUE && dv + dOther < mu) {
+                mu = dv + dOther;
+                meeting = v;
+            }
+        };
+        if (isForward) {
+            graph.forEachSuccessor(u, relax);
+        } else {
+            graph.forEachPredecessor(u, relax);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package schawath.maxime;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Query phase of the customizable route planning: a bidirectional Dijkstra over the
+ * multi-level overlay of an {@link OverlayMetric}.
+ * Around the source and the target the original graph is searched, farther away each
+ * vertex is searched at the highest level whose cell contains neither the source nor the
+ * target, using only the cell clique and the arcs leaving the cell.
+ * Clique arcs of the resulting path are unpacked with a search restricted to their cell.
+ * An instance reuses its search workspaces and must not be shared between threads.
+ *
+ * @param <V> Vertex type
+ */
+public class DijkstraOverlay<V extends CartesianVertex> {
+    private final OverlayMetric<V> metric;
+    private final MultiLevelPartition<V> partition;
+    private final CsrGraph graph;
+    private final ConnectedComponents components; // null if not known
+    private final SearchWorkspace forward;
+    private final SearchWorkspace backward;
+    private final SearchWorkspace unpacking;
+    // arc used to reach a vertex: arc id if >= 0, -(level + 2) for a clique arc of that level
+    private final int[] forwardArc;
+    private final int[] backwardArc;
+    private int steps;
+    private int nbVisited;
+
+    /**
+     * Create a new DijkstraOverlay instance
+     *
+     * @param metric - the customized overlay to search
+     */
+    public DijkstraOverlay(OverlayMetric<V> metric) {
+        this(metric, null);
+    }
+
+    /**
+     * Create a new DijkstraOverlay instance answering queries between different components without searching
+     *
+     * @param metric     - the customized overlay to search
+     * @param components - the connected components of the graph of the metric
+     */
+    public DijkstraOverlay(OverlayMetric<V> metric, ConnectedComponents components) {
+        if (components != null && components.getNVertices() != metric.getGraph().getNVertices())
+            throw new IllegalArgumentException("Components do not match the graph size");
+        this.metric = metric;
+        this.partition = metric.getPartition();
+        this.graph = metric.getGraph();
+        this.components = components;
+        int n = graph.getNVertices();
+        forward = new SearchWorkspace(n);
+        backward = new SearchWorkspace(n);
+        unpacking = new SearchWorkspace(n);
+        forwardArc = new int[n];
+        backwardArc = new int[n];
+    }
+
+    /**
+     * Run the algorithm
+     *
+     * @param from - the source vertex id
+     * @param to   - the destination vertex id
+     * @return the result of the algorithm, with an empty path if the destination is unreachable
+     */
+    public DijkstraResult run(int from, int to) {
+        if (components != null && !components.connected(from, to)) return DijkstraResult.unreachable(from, to);
+        steps = 0;
+        nbVisited = 0;
+        forward.reset();
+        backward.reset();
+        forward.relax(from, 0, -1);
+        backward.relax(to, 0, -1);
+        long mu = from == to ? 0 : Long.MAX_VALUE;
+        int meeting = from == to ? from : -1;
+
+        IndexedMinHeap fq = forward.queue(), bq = backward.queue();
+        while (!fq.isEmpty() && !bq.isEmpty() && saturatedAdd(fq.minKey(), bq.minKey()) < mu) {
+            boolean isForward = fq.minKey() <= bq.minKey();
+            SearchWorkspace ws = isForward ? forward : backward;
+            SearchWorkspace other = isForward ? backward : forward;
+            int u = ws.queue().poll();
+            nbVisited++;
+            long du = ws.getDistance(u);
+            int level = partition.getQueryLevel(u, from, to);
+
+            if (level >= 0) {
+                int c = partition.getCell(level, u);
+                int[] boundary = partition.getBoundary(level, c);
+                int i = partition.getBoundaryIndex(level, u);
+                for (int j = 0; j < boundary.length; ++j) {
+                    ++steps;
+                    long w = isForward ? metric.getCliqueDistance(level, c, i, j) : metric.getCliqueDistance(level, c, j, i);
+                    if (w == OverlayMetric.INFINITY) continue;
+                    int v = boundary[j];
+                    if (ws.relax(v, du + w, u)) (isForward ? forwardArc : backwardArc)[v] = -(level + 2);
+                    long m = saturatedAdd(ws.getDistance(v), other.getDistance(v));
+                    if (m < mu) {
+                        mu = m;
+                        meeting = v;
+                    }
+                }
+            }
+            int first = isForward ? graph.firstOut(u) : graph.firstIn(u);
+            int end = isForward ? graph.endOut(u) : graph.endIn(u);
+            for (int k = first; k < end; ++k) {
+                int arc = isForward ? k : graph.inArc(k);
+                if (partition.getArcLevel(arc) <= level) continue; // covered by the clique
+                ++steps;
+                int v = isForward ? graph.head(arc) : graph.tail(arc);
+                if (ws.relax(v, du + graph.weight(arc), u)) (isForward ? forwardArc : backwardArc)[v] = arc;
+                long m = saturatedAdd(ws.getDistance(v), other.getDistance(v));
+                if (m < mu) {
+                    mu = m;
+                    meeting = v;
+                }
+            }
+        }
+
+        List<Integer> path = new LinkedList<>();
+        if (meeting != -1) {
+            for (int v = meeting; forward.getPredecessor(v) != -1; v = forward.getPredecessor(v)) {
+                path.addAll(0, hop(forward.getPredecessor(v), v, forwardArc[v]));
+            }
+            path.add(0, from);
+            for (int v = meeting; backward.getPredecessor(v) != -1; v = backward.getPredecessor(v)) {
+                path.addAll(hop(v, backward.getPredecessor(v), backwardArc[v]));
+            }
+        }
+        double distance = mu == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : mu;
+        return new DijkstraResult(steps, nbVisited, distance, path) {
+            @Override
+            void print() {
+                System.out.println("From " + from + " to " + to + " : " + getDistance() + " " + getVerticesList() + " in " + getSteps() + " steps and " + getNbVisited() + " nodes visited");
+            }
+        };
+    }
+
+    /**
+     * Vertices of a hop of the path, excluding its origin
+     *
+     * @param u    - origin of the hop
+     * @param v    - destination of the hop
+     * @param kind - original arc id, or encoded clique level
+     */
+    private List<Integer> hop(int u, int v, int kind) {
+        if (kind >= 0) {
+            List<Integer> single = new LinkedList<>();
+            single.add(v);
+            return single;
+        }
+        return unpack(-kind - 2, u, v);
+    }
+
+    /**
+     * Unpack a clique arc by a search on the original graph restricted to its cell
+     *
+     * @return the vertices of the shortest path inside the cell, excluding its origin
+     */
+    private List<Integer> unpack(int level, int u, int v) {
+        int c = partition.getCell(level, u);
+        SearchWorkspace ws = unpacking;
+        ws.reset();
+        ws.relax(u, 0, -1);
+        while (!ws.queue().isEmpty()) {
+            int x = ws.queue().poll();
+            if (x == v) break;
+            for (int arc = graph.firstOut(x); arc < graph.endOut(x); ++arc) {
+                int y = graph.head(arc);
+                if (partition.getCell(level, y) == c) ws.relax(y, ws.getDistance(x) + graph.weight(arc), x);
+            }
+        }
+        LinkedList<Integer> vertices = new LinkedList<>();
+        for (int x = v; x != u; x = ws.getPredecessor(x)) {
+            vertices.addFirst(x);
+        }
+        return vertices;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        return a == Long.MAX_VALUE || b == Long.MAX_VALUE ? Long.MAX_VALUE : a + b;
+    }
+}
@@ -44,6 +44,22 @@ public abstract class DijkstraResult {
         return Collections.unmodifiableList(vertsList);
     }
 
+    /**
+     * Result of a query whose destination cannot be reached, answered without searching
+     *
+     * @param from - the source vertex id
+     * @param to   - the destination vertex id
+     * @return an infinite distance and an empty path
+     */
+    static DijkstraResult unreachable(int from, int to) {
+        return new DijkstraResult(0, 0, Double.POSITIVE_INFINITY, Collections.emptyList()) {
+            @Override
+            void print() {
+                System.out.println("From " + from + " to " + to + " : unreachable (different components)");
+            }
+        };
+    }
+
     /**
      * print the result of the algorithm in the console
      */
@@ -0,0 +1,166 @@
+package schawath.maxime;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Dijkstra algorithm on a {@link CsrGraph} relaxing the successors of high degree vertices by batches.
+ * When the jdk.incubator.vector module is present (--add-modules jdk.incubator.vector) and the
+ * vector kernel of the optional src-vector source root is compiled, the arcs of a vertex whose
+ * degree is at least one vector are filtered with vector operations (see VectorRelaxationKernel);
+ * otherwise, or for smaller degrees, arcs are relaxed one by one. The benchmark
+ * ({@link RelaxationBenchmark}) found no end to end gain on the data sets, hence the optional root.
+ * Distances are kept as int when the graph allows it, see {@link RelaxationKernel#fitsInt}.
+ * An instance reuses its arrays and must not be shared between threads.
+ */
+public class DijkstraVectorized {
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL = "schawath.maxime.VectorRelaxationKernel";
+
+    private final CsrGraph graph;
+    private final RelaxationKernel kernel;
+    private final int[] predecessor;
+    private final IndexedMinHeap queue;
+    private final int[] touched;   // vertices whose distance is set, to reset them
+    private int nTouched;
+    private final int[] improving; // improving arcs of the current vertex
+    private int steps;
+    private int nbVisited;
+
+    /**
+     * Create a new DijkstraVectorized instance, vectorized if the Vector API is available
+     *
+     * @param graph - the graph to use
+     */
+    public DijkstraVectorized(CsrGraph graph) {
+        this(graph, isVectorAvailable());
+    }
+
+    /**
+     * Create a new DijkstraVectorized instance
+     *
+     * @param graph      - the graph to use
+     * @param vectorized - true to use the Vector API, false for the scalar fallback
+     * @throws IllegalStateException if vectorized and the Vector API is not available
+     */
+    public DijkstraVectorized(CsrGraph graph, boolean vectorized) {
+        this.graph = graph;
+        boolean intMode = RelaxationKernel.fitsInt(graph);
+        kernel = vectorized ? vectorKernel(graph, intMode) : new RelaxationKernel.Scalar(graph, intMode);
+        int n = graph.getNVertices();
+        predecessor = new int[n];
+        Arrays.fill(predecessor, -1);
+        queue = new IndexedMinHeap(n);
+        touched = new int[n];
+        int maxDegree = 0;
+        for (int v = 0; v < n; ++v) {
+            maxDegree = Math.max(maxDegree, graph.endOut(v) - graph.firstOut(v));
+        }
+        improving = new int[maxDegree];
+    }
+
+    /**
+     * @return true if the jdk.incubator.vector module is present and the vector kernel (src-vector) can be loaded
+     */
+    public static boolean isVectorAvailable() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) return false;
+        try {
+            Class.forName(VECTOR_KERNEL);
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static RelaxationKernel vectorKernel(CsrGraph graph, boolean intMode) {
+        if (!isVectorAvailable())
+            throw new IllegalStateException("Vector API not available, compile src-vector and run with --add-modules "
+                    + VECTOR_MODULE);
+        try {
+            return (RelaxationKernel) Class.forName(VECTOR_KERNEL)
+                    .getDeclaredConstructor(CsrGraph.class, boolean.class).newInstance(graph, intMode);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create the vector kernel", e);
+        }
+    }
+
+    /** @return the name of the relaxation kernel in use (scalar or vector, int or long distances) */
+    public String getKernelName() {
+        return kernel.getName();
+    }
+
+    /**
+     * Run the algorithm
+     *
+     * @param from - the source vertex id
+     * @param to   - the destination vertex id
+     * @return the result of the algorithm
+     */
+    public DijkstraResult run(int from, int to) {
+        steps = 0;
+        nbVisited = 0;
+        for (int i = 0; i < nTouched; ++i) {
+            kernel.clearDistance(touched[i]);
+            predecessor[touched[i]] = -1;
+        }
+        nTouched = 0;
+        queue.clear();
+
+        kernel.setDistance(from, 0);
+        touched[nTouched++] = from;
+        queue.push(from, 0);
+        int batchSize = kernel.getBatchSize();
+        int[] head = graph.heads();
+        EdgeWeights weight = graph.getWeights();
+        while (!queue.isEmpty()) {
+            long du = queue.minKey();
+            int u = queue.poll();
+            ++nbVisited;
+            if (u == to) break;
+            int begin = graph.firstOut(u), end = graph.endOut(u);
+            steps += end - begin;
+            if (end - begin >= batchSize) {
+                int n = kernel.improving(begin, end, du, improving);
+                for (int i = 0; i < n; ++i) {
+                    relax(u, head[improving[i]], du + weight.get(improving[i]));
+                }
+            } else {
+                for (int arc = begin; arc < end; ++arc) {
+                    relax(u, head[arc], du + weight.get(arc));
+                }
+            }
+        }
+
+        long d = kernel.getDistance(to);
+        List<Integer> path;
+        if (d == Long.MAX_VALUE) {
+            path = Collections.emptyList();
+        } else {
+            LinkedList<Integer> s = new LinkedList<>();
+            for (int v = to; v != -1; v = predecessor[v]) {
+                s.addFirst(v);
+            }
+            path = s;
+        }
+        return new DijkstraResult(steps, nbVisited, d == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : d, path) {
+            @Override
+            void print() {
+                System.out.println("From " + from + " to " + to + " : " + getDistance() + " " + getVerticesList() + " in " + getSteps() + " steps and " + getNbVisited() + " nodes visited");
+            }
+        };
+    }
+
+    /**
+     * Relax one arc; an arc reported as improving is checked again since parallel arcs share a head
+     */
+    private void relax(int u, int v, long d) {
+        long dv = kernel.getDistance(v);
+        if (d >= dv) return;
+        if (dv == Long.MAX_VALUE) touched[nTouched++] = v;
+        kernel.setDistance(v, d);
+        predecessor[v] = u;
+        queue.push(v, d);
+    }
+}
@@ -0,0 +1,152 @@
+package schawath.maxime;
+
+import graph.core.EdgeWeighter;
+import graph.core.Vertex;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Weights of all the edges of a graph, computed in bulk and stored compactly.
+ * Euclidean weights ({@link CartesianEdgeWeighter}) are computed in parallel over plain coordinate
+ * arrays instead of one weighter call per edge and direction; they are rounded exactly as the
+ * weighter does. Weights are stored as int when they all fit, as long otherwise: the int
+ * pass detects overflow and the weights are then computed again as long.
+ */
+public final class EdgeWeights {
+    private final int[] compact; // null if a weight does not fit an int
+    private final long[] wide;   // null if compact
+
+    private EdgeWeights(int[] compact, long[] wide) {
+        this.compact = compact;
+        this.wide = wide;
+    }
+
+    /**
+     * Compute the euclidean weights of edges, in parallel
+     *
+     * @param x    - x coordinate of each vertex
+     * @param y    - y coordinate of each vertex
+     * @param from - one endpoint of each edge
+     * @param to   - the other endpoint of each edge
+     * @return the weights, indexed like the endpoints
+     */
+    public static EdgeWeights euclidean(int[] x, int[] y, int[] from, int[] to) {
+        if (from.length != to.length)
+            throw new IllegalArgumentException("Endpoint arrays must have the same length");
+        if (x.length != y.length)
+            throw new IllegalArgumentException("Coordinate arrays must have the same length");
+        int[] compact = new int[from.length];
+        AtomicBoolean overflow = new AtomicBoolean();
+        IntStream.range(0, from.length).parallel().forEach(e -> {
+            long w = euclidean(x, y, from[e], to[e]);
+            if (w != (int) w) {
+                overflow.set(true);
+            } else {
+                compact[e] = (int) w;
+            }
+        });
+        if (!overflow.get()) return new EdgeWeights(compact, null);
+
+        long[] wide = new long[from.length];
+        IntStream.range(0, from.length).parallel().forEach(e -> wide[e] = euclidean(x, y, from[e], to[e]));
+        return new EdgeWeights(null, wide);
+    }
+
+    private static long euclidean(int[] x, int[] y, int u, int v) {
+        double dx = x[u] - x[v]; // int difference, as in CartesianEdgeWeighter
+        double dy = y[u] - y[v];
+        return Math.round(Math.sqrt(dx * dx + dy * dy)); // Math.pow(d, 2) is exact, so is d * d
+    }
+
+    /**
+     * Compute the weights of edges, in bulk for euclidean weights of cartesian vertices,
+     * else with one (sequential) call of the weighter per edge
+     *
+     * @param vertices - the vertices, indexed by id
+     * @param weighter - the weighting function
+     * @param from     - one endpoint of each edge
+     * @param to       - the other endpoint of each edge
+     * @return the weights, indexed like the endpoints
+     */
+    public static <V extends Vertex> EdgeWeights compute(List<V> vertices, EdgeWeighter<? super V> weighter,
+                                                         int[] from, int[] to) {
+        // exact class: a subclass may override weight()
+        if (weighter != null && weighter.getClass() == CartesianEdgeWeighter.class) {
+            int[] x = new int[vertices.size()];
+            int[] y = new int[vertices.size()];
+            boolean cartesian = true;
+            for (int id = 0; id < x.length && cartesian; ++id) {
+                if (vertices.get(id) instanceof CartesianVertex) {
+                    CartesianVertex v = (CartesianVertex) vertices.get(id);
+                    x[id] = v.getX();
+                    y[id] = v.getY();
+                } else {
+                    cartesian = false;
+                }
+            }
+            if (cartesian) return euclidean(x, y, from, to);
+        }
+        long[] weights = new long[from.length];
+        for (int e = 0; e < from.length; ++e) {
+            weights[e] = weighter.weight(vertices.get(from[e]), vertices.get(to[e]));
+        }
+        return of(weights);
+    }
+
+    /**
+     * Store weights compactly if they fit an int
+     *
+     * @param weights - the weights
+     * @return the weights (the array is kept if they do not fit)
+     */
+    public static EdgeWeights of(long[] weights) {
+        int[] compact = new int[weights.length];
+        for (int e = 0; e < weights.length; ++e) {
+            if (weights[e] != (int) weights[e]) return new EdgeWeights(null, weights);
+            compact[e] = (int) weights[e];
+        }
+        return new EdgeWeights(compact, null);
+    }
+
+    /** @return number of weights */
+    public int size() {
+        return compact != null ? compact.length : wide.length;
+    }
+
+    /** @return weight of an edge */
+    public long get(int edge) {
+        return compact != null ? compact[edge] : wide[edge];
+    }
+
+    /** @return true if the weights are stored as int */
+    public boolean isCompact() {
+        return compact != null;
+    }
+
+    /** @return the weights as int, null if not compact (the array is not copied, for batch processing) */
+    int[] compactArray() {
+        return compact;
+    }
+
+    /** @return the weights as long, null if compact (the array is not copied, for batch processing) */
+    long[] wideArray() {
+        return wide;
+    }
+
+    /** @return a copy of the weights as long */
+    public long[] toLongArray() {
+        if (wide != null) return wide.clone();
+        long[] weights = new long[compact.length];
+        for (int e = 0; e < compact.length; ++e) {
+            weights[e] = compact[e];
+        }
+        return weights;
+    }
+
+    /** @return memory used by the weights, in bytes (array payload only) */
+    public long getMemoryBytes() {
+        return compact != null ? 4L * compact.length : 8L * wide.length;
+    }
+}
@@ -0,0 +1,300 @@
+package schawath.maxime;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Random geometric graph generator, to benchmark the engines on graphs much larger
+ * than the ones in data/.
+ * Vertices are uniformly spread in a square, two vertices are connected when their
+ * distance is at most the connection radius (derived from a target average degree if needed).
+ * Coordinates only depend on the seed and the vertex id, so they can be generated in parallel.
+ * Neighbours are found through a uniform grid of cells of the radius size; only the
+ * coordinates and the grid are kept in memory, adjacency lists are generated by blocks
+ * of vertices in parallel and written to the output in order as soon as a batch is done.
+ * The text format is the one read by {@link graph.reader.CartesianGraphReader}, the binary
+ * format is the one read by {@link UndirectedGraph#readBinary}.
+ */
+public class GeometricGraphGenerator {
+    /** Magic number starting a binary graph file ("RGG1") */
+    public static final int BINARY_MAGIC = 0x52474731;
+    /** Vertices per block generated by one task */
+    private static final int BLOCK_SIZE = 1 << 14;
+
+    private final int nVertices;
+    private final int side;
+    private final double radius;
+    private final int[] x;
+    private final int[] y;
+    private final int gridWidth;
+    private final int[] cellStart;    // vertices of cell c are cellVertices[cellStart[c], cellStart[c + 1])
+    private final int[] cellVertices;
+    private final int[] cellX;        // coordinates parallel to cellVertices, for a cache friendly scan
+    private final int[] cellY;
+
+    /**
+     * Create a generator and place the vertices
+     *
+     * @param nVertices - the number of vertices
+     * @param side      - the side of the square in which vertices are placed
+     * @param radius    - the connection radius
+     * @param seed      - the random seed
+     */
+    public GeometricGraphGenerator(int nVertices, int side, double radius, long seed) {
+        if (nVertices <= 0)
+            throw new IllegalArgumentException("nVertices cannot be <= 0");
+        if (side <= 0 || radius <= 0)
+            throw new IllegalArgumentException("side and radius must be > 0");
+        this.nVertices = nVertices;
+        this.side = side;
+        this.radius = radius;
+        x = new int[nVertices];
+        y = new int[nVertices];
+        IntStream.range(0, nVertices).parallel().forEach(v -> {
+            x[v] = (int) Long.remainderUnsigned(mix(seed, 2L * v), side + 1L);
+            y[v] = (int) Long.remainderUnsigned(mix(seed, 2L * v + 1), side + 1L);
+        });
+
+        // bucket vertices by grid cell (counting sort)
+        gridWidth = (int) Math.min(Math.ceil((side + 1) / radius), Math.max(1, (int) Math.sqrt(nVertices)));
+        cellStart = new int[gridWidth * gridWidth + 1];
+        for (int v = 0; v < nVertices; ++v) {
+            ++cellStart[cellOf(x[v], y[v]) + 1];
+        }
+        for (int c = 0; c < gridWidth * gridWidth; ++c) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellVertices = new int[nVertices];
+        cellX = new int[nVertices];
+        cellY = new int[nVertices];
+        int[] next = cellStart.clone();
+        for (int v = 0; v < nVertices; ++v) {
+            int i = next[cellOf(x[v], y[v])]++;
+            cellVertices[i] = v;
+            cellX[i] = x[v];
+            cellY[i] = y[v];
+        }
+    }
+
+    /**
+     * Radius giving the wanted average degree for a number of vertices in a square
+     *
+     * @param nVertices - the number of vertices
+     * @param side      - the side of the square
+     * @param degree    - the average degree wanted
+     * @return the connection radius
+     */
+    public static double radiusForDegree(int nVertices, int side, double degree) {
+        return Math.sqrt(degree * (double) side * side / (Math.PI * nVertices));
+    }
+
+    /**
+     * Write the graph in the text format
+     *
+     * @param out - the output, buffered by the caller if needed
+     * @throws IOException if a write error occurred
+     */
+    public void writeText(OutputStream out) throws IOException {
+        out.write((nVertices + "\n").getBytes(StandardCharsets.US_ASCII));
+        writeBlocks(out, this::textVertices);
+        writeBlocks(out, this::textEdges);
+        out.flush();
+    }
+
+    /**
+     * Write the graph in the binary format: magic, number of vertices, coordinates (x, y) of each
+     * vertex, then for each vertex its degree followed by its neighbours, all as big-endian ints
+     *
+     * @param out - the output, buffered by the caller if needed
+     * @throws IOException if a write error occurred
+     */
+    public void writeBinary(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(BINARY_MAGIC);
+        data.writeInt(nVertices);
+        writeBlocks(data, this::binaryVertices);
+        writeBlocks(data, this::binaryEdges);
+        data.flush();
+    }
+
+    /**
+     * Generate blocks in parallel, a batch at a time, and write them in order
+     */
+    private void writeBlocks(OutputStream out, BlockWriter writer) throws IOException {
+        int nBlocks = (nVertices + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int batch = 4 * Runtime.getRuntime().availableProcessors();
+        for (int first = 0; first < nBlocks; first += batch) {
+            byte[][] chunks = IntStream.range(first, Math.min(nBlocks, first + batch)).parallel()
+                    .mapToObj(b -> writer.write(b * BLOCK_SIZE, Math.min(nVertices, (b + 1) * BLOCK_SIZE)))
+                    .toArray(byte[][]::new);
+            for (byte[] chunk : chunks) {
+                out.write(chunk);
+            }
+        }
+    }
+
+    private byte[] textVertices(int from, int to) {
+        StringBuilder sb = new StringBuilder((to - from) * 16);
+        for (int v = from; v < to; ++v) {
+            sb.append(v).append(' ').append(x[v]).append(' ').append(y[v]).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private byte[] textEdges(int from, int to) {
+        StringBuilder sb = new StringBuilder((to - from) * 48);
+        int[] neighbours = new int[16];
+        for (int v = from; v < to; ++v) {
+            neighbours = neighbours(v, neighbours);
+            int degree = neighbours[0];
+            if (degree == 0) continue; // isolated vertices have no line, as in data/
+            sb.append(v);
+            for (int i = 1; i <= degree; ++i) {
+                sb.append(' ').append(neighbours[i]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private byte[] binaryVertices(int from, int to) {
+        ByteBuffer buffer = ByteBuffer.allocate((to - from) * 8);
+        for (int v = from; v < to; ++v) {
+            buffer.putInt(x[v]).putInt(y[v]);
+        }
+        return buffer.array();
+    }
+
+    private byte[] binaryEdges(int from, int to) {
+        ByteBuffer buffer = ByteBuffer.allocate((to - from) * 32);
+        int[] neighbours = new int[16];
+        for (int v = from; v < to; ++v) {
+            neighbours = neighbours(v, neighbours);
+            int degree = neighbours[0];
+            if (buffer.remaining() < 4 * (degree + 1)) {
+                ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity() + 4 * (degree + 1));
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
+            buffer.putInt(degree);
+            for (int i = 1; i <= degree; ++i) {
+                buffer.putInt(neighbours[i]);
+            }
+        }
+        byte[] result = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(result);
+        return result;
+    }
+
+    /**
+     * Find the neighbours of a vertex in the 3x3 cells around it
+     *
+     * @param v      - the vertex id
+     * @param result - a buffer to reuse
+     * @return the buffer (possibly grown), holding the degree at index 0 followed by the neighbours
+     */
+    private int[] neighbours(int v, int[] result) {
+        long r2 = (long) Math.floor(radius * radius);
+        int cx = cellIndex(x[v]), cy = cellIndex(y[v]);
+        int reach = (int) Math.ceil(radius / ((side + 1.0) / gridWidth)); // cells to scan around
+        int degree = 0;
+        for (int gx = Math.max(0, cx - reach); gx <= Math.min(gridWidth - 1, cx + reach); ++gx) {
+            for (int gy = Math.max(0, cy - reach); gy <= Math.min(gridWidth - 1, cy + reach); ++gy) {
+                int c = gx * gridWidth + gy;
+                for (int i = cellStart[c]; i < cellStart[c + 1]; ++i) {
+                    long dx = cellX[i] - x[v], dy = cellY[i] - y[v];
+                    int u = cellVertices[i];
+                    if (dx * dx + dy * dy > r2 || u == v) continue;
+                    if (++degree == result.length) result = Arrays.copyOf(result, result.length * 2);
+                    result[degree] = u;
+                }
+            }
+        }
+        result[0] = degree;
+        return result;
+    }
+
+    private int cellIndex(int coordinate) {
+        return Math.min(gridWidth - 1, (int) ((long) coordinate * gridWidth / (side + 1L)));
+    }
+
+    private int cellOf(int cx, int cy) {
+        return cellIndex(cx) * gridWidth + cellIndex(cy);
+    }
+
+    /**
+     * SplitMix64 finalizer of the seed and a counter, so values do not depend on generation order
+     */
+    private static long mix(long seed, long counter) {
+        long z = seed + (counter + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Generates the bytes of a block of vertices
+     */
+    @FunctionalInterface
+    private interface BlockWriter {
+        byte[] write(int from, int to);
+    }
+
+    /**
+     * Generate a graph file.
+     * Usage: GeometricGraphGenerator nVertices degree seed output [--binary] [--side s] [--radius r]
+     *
+     * @param args - the command line arguments
+     * @throws IOException if a write error occurred
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: GeometricGraphGenerator nVertices degree seed output [--binary] [--side s] [--radius r]");
+            return;
+        }
+        int n = Integer.parseInt(args[0]);
+        double degree = Double.parseDouble(args[1]);
+        long seed = Long.parseLong(args[2]);
+        String output = args[3];
+        boolean binary = false;
+        // same density as data/R10000_1.txt by default: 10000 vertices in a 10000 x 10000 square
+        int side = (int) Math.max(10000, Math.ceil(Math.sqrt(n) * 100));
+        double radius = -1;
+        for (int i = 4; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--binary":
+                    binary = true;
+                    break;
+                case "--side":
+                    side = Integer.parseInt(args[++i]);
+                    break;
+                case "--radius":
+                    radius = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (radius <= 0) radius = radiusForDegree(n, side, degree);
+
+        long start = System.nanoTime();
+        GeometricGraphGenerator generator = new GeometricGraphGenerator(n, side, radius, seed);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 1 << 20)) {
+            if (binary) {
+                generator.writeBinary(out);
+            } else {
+                generator.writeText(out);
+            }
+        }
+        System.out.println("Generated " + n + " vertices (radius " + radius + ", side " + side + ") in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms to " + output);
+    }
+}
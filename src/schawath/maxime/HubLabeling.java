@@ -0,0 +1,333 @@
+package schawath.maxime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 2-hop hub labeling, built by pruned landmark labeling.
+ * Every vertex v gets an out label (hubs reachable from v, with their distance) and an in label
+ * (hubs reaching v), such that every shortest path from u to v goes through a hub of both the
+ * out label of u and the in label of v. A distance query is thus a merge of two sorted arrays.
+ * Labels are built with one pruned Dijkstra per vertex (and direction) in the given order:
+ * a search from the hub stops at the vertices whose distance is already answered by the
+ * previous labels. Important vertices (in the order) first give the smallest labels.
+ * Labels are flattened in primitive arrays, sorted by hub rank, and can be saved to a file.
+ * Paths are not stored: {@link #run(int, int)} falls back to a search on the graph, with one
+ * search engine per thread reused between queries. Labels are read-only and can be shared between threads.
+ */
+public final class HubLabeling {
+    /** Magic number starting a label file ("HUB1") */
+    private static final int MAGIC = 0x48554231;
+
+    private final Labels out;
+    private final Labels in; // same as out for a symmetric graph
+    private final WeightedGraph graph;
+    private final ThreadLocal<DijkstraBidirectionalConfigurable> engines; // null without graph
+
+    private HubLabeling(Labels out, Labels in, WeightedGraph graph) {
+        this.out = out;
+        this.in = in;
+        this.graph = graph;
+        engines = graph == null ? null : ThreadLocal.withInitial(
+                () -> new DijkstraBidirectionalConfigurable(graph, AlternationStrategy.SMALLER_RADIUS));
+    }
+
+    /**
+     * Order vertices by decreasing degree
+     *
+     * @param graph - the graph
+     * @return order[i] = id of the i-th most important vertex
+     */
+    public static int[] orderByDegree(WeightedGraph graph) {
+        int n = graph.getNVertices();
+        long[] keys = new long[n];
+        int[] degree = new int[1];
+        for (int v = 0; v < n; ++v) {
+            degree[0] = 0;
+            graph.forEachSuccessor(v, (u, w) -> ++degree[0]);
+            keys[v] = ((long) -degree[0] << 32) | v;
+        }
+        return sortedIds(keys);
+    }
+
+    /**
+     * Order vertices by coordinate centrality: the closest to the centre of the vertices first
+     *
+     * @param vertices - the vertices, indexed by id
+     * @return order[i] = id of the i-th most important vertex
+     */
+    public static int[] orderByCoordinateCentrality(List<? extends CartesianVertex> vertices) {
+        double cx = 0, cy = 0;
+        for (CartesianVertex v : vertices) {
+            cx += v.getX();
+            cy += v.getY();
+        }
+        cx /= vertices.size();
+        cy /= vertices.size();
+        long[] keys = new long[vertices.size()];
+        for (int id = 0; id < keys.length; ++id) {
+            CartesianVertex v = vertices.get(id);
+            long d2 = (long) ((v.getX() - cx) * (v.getX() - cx) + (v.getY() - cy) * (v.getY() - cy));
+            keys[id] = (Math.min(d2, Integer.MAX_VALUE) << 32) | id;
+        }
+        return sortedIds(keys);
+    }
+
+    private static int[] sortedIds(long[] keys) {
+        Arrays.sort(keys);
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    /**
+     * Compute the labels of a graph
+     *
+     * @param graph     - the graph, also used to retrieve paths
+     * @param order     - vertex ids, most important first (see {@link #orderByDegree})
+     * @param symmetric - true if predecessors are the successors (undirected graph), to build one label per vertex
+     * @return the hub labeling
+     */
+    public static HubLabeling build(WeightedGraph graph, int[] order, boolean symmetric) {
+        int n = graph.getNVertices();
+        if (order.length != n)
+            throw new IllegalArgumentException("Order must contain " + n + " vertices");
+        Builder outBuilder = new Builder(n);
+        Builder inBuilder = symmetric ? outBuilder : new Builder(n);
+        SearchWorkspace ws = new SearchWorkspace(n);
+        long[] hubDistance = new long[n]; // distances of the label of the current hub, by hub rank
+        Arrays.fill(hubDistance, Long.MAX_VALUE);
+
+        for (int rank = 0; rank < n; ++rank) {
+            int hub = order[rank];
+            prunedSearch(graph, ws, hub, rank, true, outBuilder, inBuilder, hubDistance);
+            if (!symmetric) prunedSearch(graph, ws, hub, rank, false, inBuilder, outBuilder, hubDistance);
+        }
+        Labels out = outBuilder.flatten();
+        return new HubLabeling(out, symmetric ? out : inBuilder.flatten(), graph);
+    }
+
+    /**
+     * Search from a hub, adding it to the labels of the vertices whose distance is not covered yet
+     *
+     * @param forward    - true to search successors (filling in labels), false for predecessors (out labels)
+     * @param hubLabels  - labels of the hub used for pruning (out labels when searching forward)
+     * @param reached    - labels of the reached vertices, to which the hub is added
+     */
+    private static void prunedSearch(WeightedGraph graph, SearchWorkspace ws, int hub, int rank, boolean forward,
+                                     Builder hubLabels, Builder reached, long[] hubDistance) {
+        // the hub label may grow (and be reallocated) during the search when both labels are the same
+        int[] hubs = hubLabels.hubs[hub];
+        long[] distances = hubLabels.distances[hub];
+        int size = hubLabels.size[hub];
+        for (int i = 0; i < size; ++i) {
+            hubDistance[hubs[i]] = distances[i];
+        }
+
+        ws.reset();
+        ws.relax(hub, 0, -1);
+        IndexedMinHeap queue = ws.queue();
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            long d = ws.getDistance(v);
+            if (reached.covers(v, hubDistance, d)) continue; // pruned
+            reached.add(v, rank, d);
+            WeightedGraph.ArcVisitor relax = (u, weight) -> ws.relax(u, d + weight, v);
+            if (forward) {
+                graph.forEachSuccessor(v, relax);
+            } else {
+                graph.forEachPredecessor(v, relax);
+            }
+        }
+
+        for (int i = 0; i < size; ++i) {
+            hubDistance[hubs[i]] = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Shortest distance between two vertices, by merging the out label of the source
+     * with the in label of the target
+     *
+     * @param from - the source vertex id
+     * @param to   - the destination vertex id
+     * @return the distance, Long.MAX_VALUE if unreachable
+     */
+    public long distance(int from, int to) {
+        int i = out.offsets[from], iEnd = out.offsets[from + 1];
+        int j = in.offsets[to], jEnd = in.offsets[to + 1];
+        long best = Long.MAX_VALUE;
+        while (i < iEnd && j < jEnd) {
+            int a = out.hubs[i], b = in.hubs[j];
+            if (a == b) {
+                best = Math.min(best, out.distances[i++] + in.distances[j++]);
+            } else if (a < b) {
+                ++i;
+            } else {
+                ++j;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Shortest path between two vertices, with a search on the graph since labels only hold distances
+     *
+     * @param from - the source vertex id
+     * @param to   - the destination vertex id
+     * @return the result of the search
+     */
+    public DijkstraResult run(int from, int to) {
+        if (graph == null)
+            throw new IllegalStateException("No graph to retrieve paths, load the labels with a graph");
+        return engines.get().run(from, to);
+    }
+
+    /** @return average number of hubs per label */
+    public double getAverageLabelSize() {
+        double size = (double) out.hubs.length / (out.offsets.length - 1);
+        return in == out ? size : (size + (double) in.hubs.length / (in.offsets.length - 1)) / 2;
+    }
+
+    /** @return memory used by the labels, in bytes (arrays payload only) */
+    public long getMemoryBytes() {
+        long bytes = out.getMemoryBytes();
+        return in == out ? bytes : bytes + in.getMemoryBytes();
+    }
+
+    /**
+     * Save the labels to a file
+     *
+     * @param filename - the file
+     * @throws IOException if a write error occurred
+     */
+    public void save(String filename) throws IOException {
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 20))) {
+            data.writeInt(MAGIC);
+            data.writeBoolean(in == out);
+            out.write(data);
+            if (in != out) in.write(data);
+        }
+    }
+
+    /**
+     * Load labels from a file
+     *
+     * @param filename - the file
+     * @param graph    - the graph the labels were built for, to retrieve paths (may be null)
+     * @return the hub labeling
+     * @throws IOException              if a read error occurred
+     * @throws IllegalArgumentException if file is malformed
+     */
+    public static HubLabeling load(String filename, WeightedGraph graph) throws IOException {
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 20))) {
+            if (data.readInt() != MAGIC)
+                throw new IllegalArgumentException("Not a hub label file");
+            boolean symmetric = data.readBoolean();
+            Labels out = Labels.read(data);
+            Labels in = symmetric ? out : Labels.read(data);
+            if (graph != null && graph.getNVertices() != out.offsets.length - 1)
+                throw new IllegalArgumentException("Labels do not match the graph size");
+            return new HubLabeling(out, in, graph);
+        }
+    }
+
+    /**
+     * Flattened labels of all vertices: hubs (by rank) and distances of vertex v are in [offsets[v], offsets[v + 1])
+     */
+    private static final class Labels {
+        private final int[] offsets;
+        private final int[] hubs;
+        private final long[] distances;
+
+        Labels(int[] offsets, int[] hubs, long[] distances) {
+            this.offsets = offsets;
+            this.hubs = hubs;
+            this.distances = distances;
+        }
+
+        long getMemoryBytes() {
+            return 4L * offsets.length + 4L * hubs.length + 8L * distances.length;
+        }
+
+        void write(DataOutputStream data) throws IOException {
+            data.writeInt(offsets.length - 1);
+            data.writeInt(hubs.length);
+            for (int o : offsets) data.writeInt(o);
+            for (int h : hubs) data.writeInt(h);
+            for (long d : distances) data.writeLong(d);
+        }
+
+        static Labels read(DataInputStream data) throws IOException {
+            int n = data.readInt();
+            int size = data.readInt();
+            int[] offsets = new int[n + 1];
+            int[] hubs = new int[size];
+            long[] distances = new long[size];
+            for (int i = 0; i <= n; ++i) offsets[i] = data.readInt();
+            for (int i = 0; i < size; ++i) hubs[i] = data.readInt();
+            for (int i = 0; i < size; ++i) distances[i] = data.readLong();
+            return new Labels(offsets, hubs, distances);
+        }
+    }
+
+    /**
+     * Growable labels, hubs are appended by increasing rank so each label stays sorted
+     */
+    private static final class Builder {
+        private final int[][] hubs;
+        private final long[][] distances;
+        private final int[] size;
+
+        Builder(int n) {
+            hubs = new int[n][4];
+            distances = new long[n][4];
+            size = new int[n];
+        }
+
+        void add(int v, int rank, long distance) {
+            if (size[v] == hubs[v].length) {
+                hubs[v] = Arrays.copyOf(hubs[v], size[v] * 2);
+                distances[v] = Arrays.copyOf(distances[v], size[v] * 2);
+            }
+            hubs[v][size[v]] = rank;
+            distances[v][size[v]] = distance;
+            ++size[v];
+        }
+
+        /**
+         * @return true if a hub already in the label of v gives a path no longer than distance
+         */
+        boolean covers(int v, long[] hubDistance, long distance) {
+            for (int i = 0; i < size[v]; ++i) {
+                long d = hubDistance[hubs[v][i]];
+                if (d != Long.MAX_VALUE && d + distances[v][i] <= distance) return true;
+            }
+            return false;
+        }
+
+        Labels flatten() {
+            int n = size.length;
+            int[] offsets = new int[n + 1];
+            for (int v = 0; v < n; ++v) {
+                offsets[v + 1] = Math.addExact(offsets[v], size[v]);
+            }
+            int[] flatHubs = new int[offsets[n]];
+            long[] flatDistances = new long[offsets[n]];
+            for (int v = 0; v < n; ++v) {
+                System.arraycopy(hubs[v], 0, flatHubs, offsets[v], size[v]);
+                System.arraycopy(distances[v], 0, flatDistances, offsets[v], size[v]);
+            }
+            return new Labels(offsets, flatHubs, flatDistances);
+        }
+    }
+}
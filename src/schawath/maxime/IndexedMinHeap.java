@@ -0,0 +1,127 @@
+package schawath.maxime;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of vertex ids keyed by a long distance, with decrease-key.
+ * Unlike a {@link java.util.PriorityQueue} of vertices, updating a key costs
+ * O(log n) instead of a linear remove, and clearing costs O(size).
+ */
+public final class IndexedMinHeap {
+    private final int[] heap;      // vertex ids, heap ordered
+    private final long[] keys;     // keys, parallel to heap
+    private final int[] position;  // position of each vertex in the heap, -1 if absent
+    private int size;
+
+    /**
+     * Create a heap able to hold vertex ids in [0, capacity)
+     *
+     * @param capacity - the number of vertices
+     */
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new long[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /** @return true if the heap is empty */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** @return number of vertices in the heap */
+    public int size() {
+        return size;
+    }
+
+    /** @return true if the vertex is in the heap */
+    public boolean contains(int vertex) {
+        return position[vertex] != -1;
+    }
+
+    /** @return the smallest key, the heap must not be empty */
+    public long minKey() {
+        return keys[0];
+    }
+
+    /** @return the vertex with the smallest key, the heap must not be empty */
+    public int peek() {
+        return heap[0];
+    }
+
+    /**
+     * Insert a vertex or decrease its key if it is already in the heap
+     *
+     * @param vertex - the vertex id
+     * @param key    - the new key, ignored if larger than the current one
+     */
+    public void push(int vertex, long key) {
+        int i = position[vertex];
+        if (i == -1) {
+            i = size++;
+        } else if (keys[i] <= key) {
+            return;
+        }
+        siftUp(i, vertex, key);
+    }
+
+    /**
+     * Remove the vertex with the smallest key
+     *
+     * @return the removed vertex id
+     */
+    public int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        --size;
+        if (size > 0) {
+            siftDown(0, heap[size], keys[size]);
+        }
+        return top;
+    }
+
+    /**
+     * Remove all vertices, in O(size)
+     */
+    public void clear() {
+        for (int i = 0; i < size; ++i) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i, int vertex, long key) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) break;
+            move(parent, i);
+            i = parent;
+        }
+        place(i, vertex, key);
+    }
+
+    private void siftDown(int i, int vertex, long key) {
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) ++child;
+            if (key <= keys[child]) break;
+            move(child, i);
+            i = child;
+        }
+        place(i, vertex, key);
+    }
+
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        keys[to] = keys[from];
+        position[heap[to]] = to;
+    }
+
+    private void place(int i, int vertex, long key) {
+        heap[i] = vertex;
+        keys[i] = key;
+        position[vertex] = i;
+    }
+}
@@ -0,0 +1,158 @@
+package schawath.maxime;
+
+import java.util.Arrays;
+
+/**
+ * Bounded range (isochrone) search: all vertices reachable from a source within a distance.
+ * The search stops as soon as the smallest distance in the queue exceeds the bound, and
+ * uses a {@link SearchWorkspace} so its cost only depends on the reached area, not on
+ * the size of the graph.
+ * An instance must not be shared between threads, neither should its workspace.
+ */
+public class Isochrone {
+    private final CsrGraph graph;
+    private final SearchWorkspace workspace;
+    private int steps;
+
+    /**
+     * Create a new Isochrone instance with its own workspace
+     *
+     * @param graph - the graph to use
+     */
+    public Isochrone(CsrGraph graph) {
+        this(graph, new SearchWorkspace(graph.getNVertices()));
+    }
+
+    /**
+     * Create a new Isochrone instance
+     *
+     * @param graph     - the graph to use
+     * @param workspace - the workspace to reuse, sized for the graph
+     */
+    public Isochrone(CsrGraph graph, SearchWorkspace workspace) {
+        if (workspace.capacity() != graph.getNVertices())
+            throw new IllegalArgumentException("Workspace does not match the graph size");
+        this.graph = graph;
+        this.workspace = workspace;
+    }
+
+    /**
+     * Run the search
+     *
+     * @param from         - the source vertex id
+     * @param maxDistance  - the maximum distance
+     * @param withBoundary - true to also collect the arcs leaving the reached area
+     * @return the reached vertices and their distances, sorted by distance
+     */
+    public Result run(int from, long maxDistance, boolean withBoundary) {
+        steps = 0;
+        workspace.reset();
+        workspace.relax(from, 0, -1);
+        IndexedMinHeap queue = workspace.queue();
+        int[] vertices = new int[16];
+        long[] distances = new long[16];
+        int size = 0;
+
+        // vertices are settled by increasing distance, so the result comes out sorted
+        while (!queue.isEmpty() && queue.minKey() <= maxDistance) {
+            int u = queue.poll();
+            long du = workspace.getDistance(u);
+            if (size == vertices.length) {
+                vertices = Arrays.copyOf(vertices, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            vertices[size] = u;
+            distances[size] = du;
+            ++size;
+            for (int arc = graph.firstOut(u); arc < graph.endOut(u); ++arc) {
+                ++steps;
+                workspace.relax(graph.head(arc), du + graph.weight(arc), u);
+            }
+        }
+
+        int[] boundary = null;
+        double[] fractions = null;
+        if (withBoundary) {
+            boundary = new int[16];
+            fractions = new double[16];
+            int nBoundary = 0;
+            for (int i = 0; i < size; ++i) {
+                int u = vertices[i];
+                for (int arc = graph.firstOut(u); arc < graph.endOut(u); ++arc) {
+                    if (workspace.isSettled(graph.head(arc))) continue;
+                    if (nBoundary == boundary.length) {
+                        boundary = Arrays.copyOf(boundary, nBoundary * 2);
+                        fractions = Arrays.copyOf(fractions, nBoundary * 2);
+                    }
+                    long weight = graph.weight(arc);
+                    boundary[nBoundary] = arc;
+                    fractions[nBoundary] = weight == 0 ? 1 : Math.min(1, (double) (maxDistance - distances[i]) / weight);
+                    ++nBoundary;
+                }
+            }
+            boundary = Arrays.copyOf(boundary, nBoundary);
+            fractions = Arrays.copyOf(fractions, nBoundary);
+        }
+        return new Result(Arrays.copyOf(vertices, size), Arrays.copyOf(distances, size), boundary, fractions, steps);
+    }
+
+    /**
+     * Result of a bounded search
+     */
+    public static final class Result {
+        private final int[] vertices;
+        private final long[] distances;
+        private final int[] boundaryArcs;
+        private final double[] boundaryFractions;
+        private final int steps;
+
+        private Result(int[] vertices, long[] distances, int[] boundaryArcs, double[] boundaryFractions, int steps) {
+            this.vertices = vertices;
+            this.distances = distances;
+            this.boundaryArcs = boundaryArcs;
+            this.boundaryFractions = boundaryFractions;
+            this.steps = steps;
+        }
+
+        /**
+         * @return the reached vertex ids, sorted by distance (the array is not copied)
+         */
+        public int[] getVertices() {
+            return vertices;
+        }
+
+        /**
+         * @return the distances of the reached vertices, parallel to {@link #getVertices()} (the array is not copied)
+         */
+        public long[] getDistances() {
+            return distances;
+        }
+
+        /**
+         * @return the arcs from a reached vertex to an unreached one, null if not requested
+         */
+        public int[] getBoundaryArcs() {
+            return boundaryArcs;
+        }
+
+        /**
+         * Position where the isochrone crosses a boundary arc, to draw it
+         *
+         * @param index - index in {@link #getBoundaryArcs()}
+         * @return the fraction of the arc, from its origin, reachable within the maximum distance
+         */
+        public double getBoundaryFraction(int index) {
+            return boundaryFractions[index];
+        }
+
+        /** @return number of reached vertices */
+        public int size() {
+            return vertices.length;
+        }
+
+        /** @return number of relaxed arcs */
+        public int getSteps() {
+            return steps;
+        }
+    }
+}
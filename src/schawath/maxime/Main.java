@@ -20,7 +20,20 @@ public class Main {
      */
     private static final String DATA_FOLDER = "data/";
 
-    public static void main(String[] args) throws IOException {
+    /**
+     * Run the lab experiment (simple against bidirectional Dijkstra on R10000_1.txt, seed 20220404,
+     * 1000 queries, results in results.csv), or any workload given as arguments, see {@link WorkloadRunner}
+     * (whose CSV has one row per engine and query: engine,query,from,to,distance,nbVisited,pathSize,latencyNs)
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0) {
+            WorkloadRunner.main(args);
+        } else {
+            experiment();
+        }
+    }
+
+    private static void experiment() throws IOException {
         Digraph<CartesianVertex, SimpleWeightedEdge<CartesianVertex>> graph = new CartesianGraphReader<>(
                 new CartesianVertexFactory(),
                 new SimpleWeightedEdgeFactory<>(new CartesianEdgeWeighter()),
@@ -52,8 +65,8 @@ public class Main {
             }
             int start = random.nextInt(graph.getNVertices()); //randomly choose a start vertex
             int end = random.nextInt(graph.getNVertices()); //randomly choose an end vertex
-            DijkstraResult resultSimple = new Dijkstra<>(graph).run(start, end); //run the simple Dijkstra algorithm
-            DijkstraResult resultBidirectional = new DijkstraBidirectional<>(graph).run(start, end); //run the bidirectional Dijkstra algorithm
+            DijkstraResult resultSimple = new Dijkstra(graph).run(start, end); //run the simple Dijkstra algorithm
+            DijkstraResult resultBidirectional = new DijkstraBidirectional(graph).run(start, end); //run the bidirectional Dijkstra algorithm
 
             //if the distance is not the same, something went wrong (hopefully not found this case)
             if (resultBidirectional.getDistance() != resultSimple.getDistance()) {
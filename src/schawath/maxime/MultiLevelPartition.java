@@ -0,0 +1,191 @@
+package schawath.maxime;
+
+import graph.core.Edge;
+import graph.core.impl.Digraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Metric independent phase of the customizable route planning: a nested
+ * multi-level partition of the graph into cells.
+ * Cells are built by recursive coordinate bisection, cutting each region in two
+ * halves along its largest extent until it fits in the cell size of a level.
+ * Level 0 holds the smallest cells, each level l + 1 cell is a union of level l cells.
+ * A vertex is a boundary vertex of its level l cell if it has an arc (in or out)
+ * to a vertex of another level l cell.
+ *
+ * @param <V> Vertex type
+ */
+public final class MultiLevelPartition<V extends CartesianVertex> {
+    private final List<V> vertices;
+    private final CsrGraph topology;
+    private final int[] cellSizes;
+    private final int[][] cell;             // cell[level][vertex]
+    private final int[] nCells;             // number of cells per level
+    private final int[][][] boundary;       // boundary[level][cell] = boundary vertices
+    private final int[][] boundaryIndex;    // index of a vertex in its cell boundary, -1 if inner
+    private final byte[] arcLevel;          // number of levels at which the arc is cut
+
+    /**
+     * Partition a graph
+     *
+     * @param graph     - the graph to partition, only its topology and coordinates are used
+     * @param cellSizes - the maximum number of vertices in a cell, for each level, increasing
+     */
+    public <E extends Edge<V>> MultiLevelPartition(Digraph<V, E> graph, int... cellSizes) {
+        if (cellSizes.length == 0 || cellSizes.length > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid number of levels: " + cellSizes.length);
+        for (int l = 0; l < cellSizes.length; ++l) {
+            if (cellSizes[l] <= 0 || (l > 0 && cellSizes[l] <= cellSizes[l - 1]))
+                throw new IllegalArgumentException("Cell sizes must be positive and increasing");
+        }
+        this.vertices = graph.getVertices();
+        this.topology = CsrGraph.of(graph, (from, to) -> 0);
+        this.cellSizes = cellSizes.clone();
+        int n = graph.getNVertices();
+        int levels = cellSizes.length;
+        cell = new int[levels][n];
+        nCells = new int[levels];
+
+        int[] perm = new int[n];
+        for (int v = 0; v < n; ++v) perm[v] = v;
+        bisect(perm, 0, n, levels);
+
+        arcLevel = new byte[topology.getNArcs()];
+        for (int arc = 0; arc < arcLevel.length; ++arc) {
+            int u = topology.tail(arc), v = topology.head(arc);
+            byte l = 0;
+            while (l < levels && cell[l][u] != cell[l][v]) ++l;
+            arcLevel[arc] = l;
+        }
+
+        boundary = new int[levels][][];
+        boundaryIndex = new int[levels][n];
+        for (int l = 0; l < levels; ++l) {
+            List<List<Integer>> cellBoundary = new ArrayList<>(nCells[l]);
+            for (int c = 0; c < nCells[l]; ++c) {
+                cellBoundary.add(new ArrayList<>());
+            }
+            Arrays.fill(boundaryIndex[l], -1);
+            for (int v = 0; v < n; ++v) {
+                if (isBoundary(v, l)) {
+                    List<Integer> b = cellBoundary.get(cell[l][v]);
+                    boundaryIndex[l][v] = b.size();
+                    b.add(v);
+                }
+            }
+            boundary[l] = toArrays(cellBoundary);
+        }
+    }
+
+    /**
+     * Recursively split vertices perm[lo, hi) along their largest coordinate extent.
+     * Every level whose cell size is reached by the region gets a new cell
+     *
+     * @param lowestAssigned - the lowest level already assigned by a parent region
+     */
+    private void bisect(int[] perm, int lo, int hi, int lowestAssigned) {
+        int size = hi - lo;
+        while (lowestAssigned > 0 && size <= cellSizes[lowestAssigned - 1]) {
+            int l = --lowestAssigned;
+            int id = nCells[l]++;
+            for (int i = lo; i < hi; ++i) cell[l][perm[i]] = id;
+        }
+        if (lowestAssigned == 0) return;
+
+        int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = lo; i < hi; ++i) {
+            V v = vertices.get(perm[i]);
+            minX = Math.min(minX, v.getX());
+            maxX = Math.max(maxX, v.getX());
+            minY = Math.min(minY, v.getY());
+            maxY = Math.max(maxY, v.getY());
+        }
+        boolean byX = (long) maxX - minX >= (long) maxY - minY;
+        // sort the region by coordinate, packing (coordinate, id) in a long to sort primitives
+        long[] keys = new long[size];
+        for (int i = 0; i < size; ++i) {
+            V v = vertices.get(perm[lo + i]);
+            keys[i] = ((long) (byX ? v.getX() : v.getY()) << 32) | perm[lo + i];
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < size; ++i) perm[lo + i] = (int) keys[i];
+
+        int mid = lo + size / 2;
+        bisect(perm, lo, mid, lowestAssigned);
+        bisect(perm, mid, hi, lowestAssigned);
+    }
+
+    private boolean isBoundary(int v, int level) {
+        for (int arc = topology.firstOut(v); arc < topology.endOut(v); ++arc) {
+            if (arcLevel[arc] > level) return true;
+        }
+        for (int i = topology.firstIn(v); i < topology.endIn(v); ++i) {
+            if (arcLevel[topology.inArc(i)] > level) return true;
+        }
+        return false;
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        int[][] result = new int[lists.size()][];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = lists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return result;
+    }
+
+    /** @return the vertices of the graph, indexed by id */
+    public List<V> getVertices() {
+        return vertices;
+    }
+
+    /** @return the topology of the graph, its weights are meaningless */
+    public CsrGraph getTopology() {
+        return topology;
+    }
+
+    /** @return number of levels */
+    public int getNLevels() {
+        return cellSizes.length;
+    }
+
+    /** @return number of cells of a level */
+    public int getNCells(int level) {
+        return nCells[level];
+    }
+
+    /** @return cell of a vertex at a level */
+    public int getCell(int level, int vertex) {
+        return cell[level][vertex];
+    }
+
+    /** @return boundary vertices of a cell */
+    public int[] getBoundary(int level, int cell) {
+        return boundary[level][cell];
+    }
+
+    /** @return index of a vertex in the boundary of its cell, -1 if it is not a boundary vertex */
+    public int getBoundaryIndex(int level, int vertex) {
+        return boundaryIndex[level][vertex];
+    }
+
+    /** @return number of levels at which an arc crosses a cell border (0 if inside a level 0 cell) */
+    public int getArcLevel(int arc) {
+        return arcLevel[arc];
+    }
+
+    /**
+     * Query level of a vertex for a search between two vertices: the highest level at which
+     * the vertex is neither in the cell of the source nor in the cell of the target
+     *
+     * @return the level, -1 if the vertex shares its level 0 cell with the source or the target
+     */
+    public int getQueryLevel(int vertex, int from, int to) {
+        for (int l = cellSizes.length - 1; l >= 0; --l) {
+            if (cell[l][vertex] != cell[l][from] && cell[l][vertex] != cell[l][to]) return l;
+        }
+        return -1;
+    }
+}
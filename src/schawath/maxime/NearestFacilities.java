@@ -0,0 +1,172 @@
+package schawath.maxime;
+
+import java.util.Arrays;
+
+/**
+ * Nearest facility queries over a set of facility vertices (depots, shops...), by network distance
+ * from the facility to the vertex.
+ * Instead of one search per facility, the searches are multi-source:
+ * the network Voronoi diagram seeds the queue with every facility at distance 0 and labels each
+ * vertex with the facility that reaches it first; the k nearest facilities of one vertex are found
+ * by a backward search from the vertex that stops as soon as k facilities are settled.
+ * An instance reuses its search workspace and must not be shared between threads.
+ */
+public class NearestFacilities {
+    private final WeightedGraph graph;
+    private final int[] facilities;
+    private final int[] facilityIndex; // index of a vertex in facilities, -1 if it is not a facility
+    private final SearchWorkspace workspace;
+
+    /**
+     * Create a new NearestFacilities instance
+     *
+     * @param graph      - the graph to use
+     * @param facilities - the facility vertex ids
+     */
+    public NearestFacilities(WeightedGraph graph, int[] facilities) {
+        this.graph = graph;
+        this.facilities = facilities.clone();
+        facilityIndex = new int[graph.getNVertices()];
+        Arrays.fill(facilityIndex, -1);
+        for (int i = 0; i < facilities.length; ++i) {
+            if (facilityIndex[facilities[i]] != -1)
+                throw new IllegalArgumentException("Duplicate facility " + facilities[i]);
+            facilityIndex[facilities[i]] = i;
+        }
+        workspace = new SearchWorkspace(graph.getNVertices());
+    }
+
+    /**
+     * Compute the network Voronoi diagram of the facilities, with one multi-source search
+     *
+     * @return the nearest facility and its distance for every vertex
+     */
+    public Voronoi voronoi() {
+        int n = graph.getNVertices();
+        int[] nearest = new int[n];
+        long[] distance = new long[n];
+        Arrays.fill(nearest, -1);
+        Arrays.fill(distance, Long.MAX_VALUE);
+
+        workspace.reset();
+        for (int f : facilities) {
+            workspace.relax(f, 0, -1);
+            nearest[f] = f;
+        }
+        IndexedMinHeap queue = workspace.queue();
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            long du = workspace.getDistance(u);
+            distance[u] = du;
+            int label = nearest[u];
+            graph.forEachSuccessor(u, (v, weight) -> {
+                if (workspace.relax(v, du + weight, u)) nearest[v] = label;
+            });
+        }
+        return new Voronoi(nearest, distance);
+    }
+
+    /**
+     * Find the nearest facilities of a vertex, stopping as soon as they are found
+     *
+     * @param vertex - the vertex id
+     * @param k      - the number of facilities wanted
+     * @return at most k facilities, nearest first (fewer if the others cannot reach the vertex)
+     * @throws IllegalArgumentException if k is negative
+     */
+    public Nearest nearest(int vertex, int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("k cannot be < 0");
+        int[] found = new int[Math.min(k, facilities.length)];
+        long[] distances = new long[found.length];
+        int size = 0;
+
+        workspace.reset();
+        workspace.relax(vertex, 0, -1);
+        IndexedMinHeap queue = workspace.queue();
+        int settled = 0;
+        while (size < found.length && !queue.isEmpty()) {
+            int u = queue.poll();
+            ++settled;
+            long du = workspace.getDistance(u);
+            if (facilityIndex[u] != -1) {
+                found[size] = u;
+                distances[size] = du;
+                if (++size == found.length) break; // the k-th facility, no need to relax its arcs
+            }
+            // backward: the distance is from the facility to the vertex
+            graph.forEachPredecessor(u, (v, weight) -> workspace.relax(v, du + weight, u));
+        }
+        return new Nearest(Arrays.copyOf(found, size), Arrays.copyOf(distances, size), settled);
+    }
+
+    /** @return the facility vertex ids */
+    public int[] getFacilities() {
+        return facilities.clone();
+    }
+
+    /**
+     * Network Voronoi diagram: the nearest facility of each vertex
+     */
+    public static final class Voronoi {
+        private final int[] nearest;
+        private final long[] distance;
+
+        private Voronoi(int[] nearest, long[] distance) {
+            this.nearest = nearest;
+            this.distance = distance;
+        }
+
+        /** @return the nearest facility of the vertex, -1 if no facility reaches it */
+        public int getNearest(int vertex) {
+            return nearest[vertex];
+        }
+
+        /** @return the distance from the nearest facility, Long.MAX_VALUE if none reaches the vertex */
+        public long getDistance(int vertex) {
+            return distance[vertex];
+        }
+
+        /**
+         * @param facility - a facility vertex id
+         * @return the number of vertices whose nearest facility is the given one
+         */
+        public int getCellSize(int facility) {
+            int size = 0;
+            for (int f : nearest) {
+                if (f == facility) ++size;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Nearest facilities of a vertex
+     */
+    public static final class Nearest {
+        private final int[] facilities;
+        private final long[] distances;
+        private final int nbVisited;
+
+        private Nearest(int[] facilities, long[] distances, int nbVisited) {
+            this.facilities = facilities;
+            this.distances = distances;
+            this.nbVisited = nbVisited;
+        }
+
+        /** @return the facilities found, nearest first (the array is not copied) */
+        public int[] getFacilities() {
+            return facilities;
+        }
+
+        /** @return the distances from the facilities, parallel to {@link #getFacilities()} (the array is not copied) */
+        public long[] getDistances() {
+            return distances;
+        }
+
+        /** @return number of vertices settled by the search */
+        public int getNbVisited() {
+            return nbVisited;
+        }
+    }
+}
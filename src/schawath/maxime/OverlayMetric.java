@@ -0,0 +1,126 @@
+package schawath.maxime;
+
+import graph.core.EdgeWeighter;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Customization phase of the customizable route planning: given a partition and a
+ * weighting function, computes for every cell the distances between all its
+ * boundary vertices (the cell clique), level by level.
+ * Level 0 cliques are computed on the original graph restricted to the cell, upper
+ * level cliques on the overlay of the level below, so customizing a new metric
+ * only costs local searches. Cells of a level are customized in parallel.
+ *
+ * @param <V> Vertex type
+ */
+public final class OverlayMetric<V extends CartesianVertex> {
+    /** Distance stored in a clique when a boundary vertex cannot reach another one inside the cell */
+    public static final long INFINITY = Long.MAX_VALUE;
+
+    private final MultiLevelPartition<V> partition;
+    private final CsrGraph graph;
+    private final long[][][] cliques; // cliques[level][cell] = row major boundary x boundary matrix
+
+    private OverlayMetric(MultiLevelPartition<V> partition, CsrGraph graph) {
+        this.partition = partition;
+        this.graph = graph;
+        this.cliques = new long[partition.getNLevels()][][];
+    }
+
+    /**
+     * Customize a partition with a weighting function
+     *
+     * @param partition - the partition
+     * @param weighter  - the weighting function
+     * @return the customized metric
+     */
+    public static <V extends CartesianVertex> OverlayMetric<V> customize(MultiLevelPartition<V> partition,
+                                                                         EdgeWeighter<? super V> weighter) {
+        CsrGraph topology = partition.getTopology();
+        EdgeWeights weights = topology.computeWeights(partition.getVertices(), weighter);
+        OverlayMetric<V> metric = new OverlayMetric<>(partition, topology.withWeights(weights));
+        ThreadLocal<SearchWorkspace> workspaces =
+                ThreadLocal.withInitial(() -> new SearchWorkspace(topology.getNVertices()));
+        for (int l = 0; l < partition.getNLevels(); ++l) {
+            final int level = l;
+            metric.cliques[level] = new long[partition.getNCells(level)][];
+            IntStream.range(0, partition.getNCells(level)).parallel().forEach(c ->
+                    metric.cliques[level][c] = metric.customizeCell(level, c, workspaces.get()));
+        }
+        return metric;
+    }
+
+    /**
+     * Compute the clique of a cell with one search per boundary vertex
+     */
+    private long[] customizeCell(int level, int cell, SearchWorkspace ws) {
+        int[] boundary = partition.getBoundary(level, cell);
+        int k = boundary.length;
+        long[] clique = new long[k * k];
+        for (int i = 0; i < k; ++i) {
+            ws.reset();
+            ws.relax(boundary[i], 0, -1);
+            IndexedMinHeap queue = ws.queue();
+            while (!queue.isEmpty()) {
+                int u = queue.poll();
+                long du = ws.getDistance(u);
+                if (level == 0) {
+                    for (int arc = graph.firstOut(u); arc < graph.endOut(u); ++arc) {
+                        if (partition.getArcLevel(arc) == 0) ws.relax(graph.head(arc), du + graph.weight(arc), u);
+                    }
+                } else {
+                    relaxClique(level - 1, u, du, ws);
+                    for (int arc = graph.firstOut(u); arc < graph.endOut(u); ++arc) {
+                        // arcs between two sub-cells of this cell
+                        if (partition.getArcLevel(arc) == level) ws.relax(graph.head(arc), du + graph.weight(arc), u);
+                    }
+                }
+            }
+            for (int j = 0; j < k; ++j) {
+                clique[i * k + j] = ws.getDistance(boundary[j]);
+            }
+        }
+        return clique;
+    }
+
+    private void relaxClique(int level, int u, long du, SearchWorkspace ws) {
+        int c = partition.getCell(level, u);
+        int[] boundary = partition.getBoundary(level, c);
+        long[] clique = cliques[level][c];
+        int row = partition.getBoundaryIndex(level, u) * boundary.length;
+        for (int j = 0; j < boundary.length; ++j) {
+            long w = clique[row + j];
+            if (w != INFINITY) ws.relax(boundary[j], du + w, u);
+        }
+    }
+
+    /** @return the partition this metric customizes */
+    public MultiLevelPartition<V> getPartition() {
+        return partition;
+    }
+
+    /** @return the original graph weighted with this metric */
+    public CsrGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Distance inside a cell between two of its boundary vertices
+     *
+     * @param level - the level of the cell
+     * @param cell  - the cell
+     * @param i     - boundary index of the origin
+     * @param j     - boundary index of the destination
+     * @return the distance, {@link #INFINITY} if unreachable inside the cell
+     */
+    public long getCliqueDistance(int level, int cell, int i, int j) {
+        return cliques[level][cell][i * partition.getBoundary(level, cell).length + j];
+    }
+
+    /** @return the number of clique entries over all levels, for diagnostics */
+    public long getNCliqueEntries() {
+        return Arrays.stream(cliques).flatMap(Arrays::stream).mapToLong(c -> c.length).sum();
+    }
+}
@@ -0,0 +1,89 @@
+package schawath.maxime;
+
+import graph.core.impl.Digraph;
+import graph.core.impl.SimpleWeightedEdge;
+import graph.core.impl.SimpleWeightedEdgeFactory;
+import graph.reader.CartesianGraphReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Random;
+
+/**
+ * Compares the scalar and the vectorized relaxation of {@link DijkstraVectorized} on the data sets,
+ * then on random geometric graphs of growing average degree, since batches only pay off
+ * when vertices have at least one vector of arcs.
+ * Usage: java --add-modules jdk.incubator.vector RelaxationBenchmark [files...] (defaults to the files of data/),
+ * with the vector kernel of src-vector compiled, see {@link DijkstraVectorized}.
+ */
+public class RelaxationBenchmark {
+    private static final String DATA_FOLDER = "data/";
+    private static final int N_QUERIES = 300;
+    private static final int[] DEGREES = {8, 16, 32, 64, 128};
+
+    public static void main(String[] args) throws IOException {
+        if (!DijkstraVectorized.isVectorAvailable()) {
+            System.out.println("Vector API not available, compile src-vector and run with --add-modules jdk.incubator.vector");
+            return;
+        }
+        String[] files = args.length > 0 ? args : new String[]{
+                DATA_FOLDER + "R4_1.txt", DATA_FOLDER + "R15_1.txt", DATA_FOLDER + "R10000_1.txt", DATA_FOLDER + "R50000_1.txt"};
+        System.out.println("graph, vertices, avgDegree, kernel, scalarMs, vectorMs, speedup");
+        for (String file : files) {
+            Digraph<CartesianVertex, SimpleWeightedEdge<CartesianVertex>> digraph = new CartesianGraphReader<>(
+                    new CartesianVertexFactory(),
+                    new SimpleWeightedEdgeFactory<>(new CartesianEdgeWeighter()),
+                    file
+            ).graph();
+            compare(file, CsrGraph.of(digraph));
+        }
+        int n = 10000;
+        int side = 10000;
+        for (int degree : DEGREES) {
+            GeometricGraphGenerator generator = new GeometricGraphGenerator(n, side,
+                    GeometricGraphGenerator.radiusForDegree(n, side, degree), 20220404);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            generator.writeText(out);
+            Digraph<CartesianVertex, SimpleWeightedEdge<CartesianVertex>> digraph = new CartesianGraphReader<>(
+                    new CartesianVertexFactory(),
+                    new SimpleWeightedEdgeFactory<>(new CartesianEdgeWeighter()),
+                    new InputStreamReader(new ByteArrayInputStream(out.toByteArray()))
+            ).graph();
+            compare("random degree " + degree, CsrGraph.of(digraph));
+        }
+    }
+
+    private static void compare(String name, CsrGraph graph) {
+        DijkstraVectorized scalar = new DijkstraVectorized(graph, false);
+        DijkstraVectorized vector = new DijkstraVectorized(graph, true);
+        long scalarNs = time(graph, scalar);
+        long vectorNs = time(graph, vector);
+        // both must find the same distances
+        Random random = new Random(1);
+        for (int i = 0; i < 20; ++i) {
+            int from = random.nextInt(graph.getNVertices()), to = random.nextInt(graph.getNVertices());
+            if (scalar.run(from, to).getDistance() != vector.run(from, to).getDistance())
+                System.out.println("ERROR on " + name + " from " + from + " to " + to);
+        }
+        System.out.printf("%s, %d, %.1f, %s, %.1f, %.1f, %.2f%n", name, graph.getNVertices(),
+                (double) graph.getNArcs() / graph.getNVertices(), vector.getKernelName(),
+                scalarNs / 1e6, vectorNs / 1e6, (double) scalarNs / vectorNs);
+    }
+
+    /**
+     * @return time to run the same random queries (after two warmup rounds), in nanoseconds
+     */
+    private static long time(CsrGraph graph, DijkstraVectorized engine) {
+        long start = 0;
+        for (int round = 0; round < 3; ++round) {
+            Random random = new Random(20220404);
+            start = System.nanoTime();
+            for (int i = 0; i < N_QUERIES; ++i) {
+                engine.run(random.nextInt(graph.getNVertices()), random.nextInt(graph.getNVertices()));
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,135 @@
+package schawath.maxime;
+
+import java.util.Arrays;
+
+/**
+ * Distances of a search and the filter finding, in a batch of arcs, the ones that improve the
+ * distance of their head (gather the head distances, add the arc weights, compare).
+ * Distances and weights are stored as int when every path length fits, so a vector kernel
+ * processes twice as many arcs per instruction; otherwise as long.
+ * The scalar kernel is the fallback when the Vector API is not available, see {@link DijkstraVectorized}.
+ */
+abstract class RelaxationKernel {
+    /** Distance of an unreached vertex in int mode */
+    static final int INT_INFINITY = Integer.MAX_VALUE;
+
+    final int[] head;
+    final long[] weight;        // null in int mode
+    final int[] intWeight;      // null in long mode
+    final long[] distance;      // null in int mode
+    final int[] intDistance;    // null in long mode
+
+    RelaxationKernel(CsrGraph graph, boolean intMode) {
+        head = graph.heads();
+        EdgeWeights w = graph.getWeights();
+        if (intMode) {
+            intWeight = w.isCompact() ? w.compactArray() : narrow(w); // shared with the graph when compact
+            intDistance = new int[graph.getNVertices()];
+            Arrays.fill(intDistance, INT_INFINITY);
+            weight = null;
+            distance = null;
+        } else {
+            weight = w.isCompact() ? w.toLongArray() : w.wideArray();
+            distance = new long[graph.getNVertices()];
+            Arrays.fill(distance, Long.MAX_VALUE);
+            intWeight = null;
+            intDistance = null;
+        }
+    }
+
+    private static int[] narrow(EdgeWeights w) {
+        int[] narrow = new int[w.size()];
+        for (int arc = 0; arc < narrow.length; ++arc) {
+            narrow[arc] = (int) w.get(arc);
+        }
+        return narrow;
+    }
+
+    /**
+     * @return true if no shortest path can reach {@link #INT_INFINITY}: maximum weight * (n - 1) fits an int
+     */
+    static boolean fitsInt(CsrGraph graph) {
+        long max = 0;
+        EdgeWeights weights = graph.getWeights();
+        for (int arc = 0; arc < weights.size(); ++arc) {
+            long w = weights.get(arc);
+            if (w < 0) return false;
+            max = Math.max(max, w);
+        }
+        return max < INT_INFINITY && max * Math.max(1, graph.getNVertices() - 1) < INT_INFINITY;
+    }
+
+    /** @return distance of a vertex, Long.MAX_VALUE if not reached */
+    final long getDistance(int vertex) {
+        if (intDistance == null) return distance[vertex];
+        int d = intDistance[vertex];
+        return d == INT_INFINITY ? Long.MAX_VALUE : d;
+    }
+
+    final void setDistance(int vertex, long d) {
+        if (intDistance == null) {
+            distance[vertex] = d;
+        } else {
+            intDistance[vertex] = (int) d;
+        }
+    }
+
+    final void clearDistance(int vertex) {
+        if (intDistance == null) {
+            distance[vertex] = Long.MAX_VALUE;
+        } else {
+            intDistance[vertex] = INT_INFINITY;
+        }
+    }
+
+    /**
+     * Find the arcs of [begin, end) whose head distance is larger than base + weight
+     *
+     * @param begin - first arc
+     * @param end   - last arc (excluded)
+     * @param base  - distance of the tail of the arcs
+     * @param out   - receives the improving arcs, in order
+     * @return number of improving arcs
+     */
+    abstract int improving(int begin, int end, long base, int[] out);
+
+    /** @return smallest batch worth calling {@link #improving} rather than relaxing arcs one by one */
+    abstract int getBatchSize();
+
+    /** @return kernel name, for the benchmarks */
+    abstract String getName();
+
+    /**
+     * Scalar fallback
+     */
+    static final class Scalar extends RelaxationKernel {
+        Scalar(CsrGraph graph, boolean intMode) {
+            super(graph, intMode);
+        }
+
+        @Override
+        int improving(int begin, int end, long base, int[] out) {
+            int n = 0;
+            if (intDistance != null) {
+                for (int arc = begin; arc < end; ++arc) {
+                    if (base + intWeight[arc] < intDistance[head[arc]]) out[n++] = arc;
+                }
+            } else {
+                for (int arc = begin; arc < end; ++arc) {
+                    if (base + weight[arc] < distance[head[arc]]) out[n++] = arc;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        int getBatchSize() {
+            return Integer.MAX_VALUE; // arcs are always relaxed one by one
+        }
+
+        @Override
+        String getName() {
+            return intDistance != null ? "scalar-int" : "scalar-long";
+        }
+    }
+}
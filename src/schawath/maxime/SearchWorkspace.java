@@ -0,0 +1,102 @@
+package schawath.maxime;
+
+import java.util.Arrays;
+
+/**
+ * Reusable state of a Dijkstra search: tentative distances, predecessors and the queue.
+ * Arrays are allocated once for the whole graph, and invalidated in O(1) between
+ * two searches using a timestamp, so that a search only costs what it explores
+ * instead of getNVertices().
+ * A workspace must not be shared by concurrent searches.
+ */
+public final class SearchWorkspace {
+    private final long[] distance;
+    private final int[] predecessor;
+    private final int[] stamp;
+    private final IndexedMinHeap queue;
+    private int current = 1;
+
+    /**
+     * Create a workspace for a graph
+     *
+     * @param nVertices - the number of vertices of the graph
+     */
+    public SearchWorkspace(int nVertices) {
+        distance = new long[nVertices];
+        predecessor = new int[nVertices];
+        stamp = new int[nVertices];
+        queue = new IndexedMinHeap(nVertices);
+    }
+
+    /** @return the number of vertices the workspace was built for */
+    public int capacity() {
+        return distance.length;
+    }
+
+    /**
+     * Forget the previous search
+     */
+    public void reset() {
+        queue.clear();
+        if (++current == Integer.MAX_VALUE) { // timestamps wrapped, really clear the arrays
+            Arrays.fill(stamp, 0);
+            current = 1;
+        }
+    }
+
+    /**
+     * Set the tentative distance of a vertex if it improves it, and (re)queue it
+     *
+     * @param vertex      - the vertex id
+     * @param dist        - the new tentative distance
+     * @param predecessor - the predecessor vertex id, -1 for a source
+     * @return true if the distance was improved
+     */
+    public boolean relax(int vertex, long dist, int predecessor) {
+        return relax(vertex, dist, predecessor, dist);
+    }
+
+    /**
+     * Same as {@link #relax(int, long, int)}, but queues the vertex with another priority,
+     * for goal directed searches (priority = distance + lower bound to the target)
+     *
+     * @param vertex      - the vertex id
+     * @param dist        - the new tentative distance
+     * @param predecessor - the predecessor vertex id, -1 for a source
+     * @param priority    - the key of the vertex in the queue
+     * @return true if the distance was improved
+     */
+    public boolean relax(int vertex, long dist, int predecessor, long priority) {
+        if (stamp[vertex] == current && distance[vertex] <= dist) return false;
+        stamp[vertex] = current;
+        distance[vertex] = dist;
+        this.predecessor[vertex] = predecessor;
+        queue.push(vertex, priority);
+        return true;
+    }
+
+    /** @return true if the vertex was reached by the current search */
+    public boolean isReached(int vertex) {
+        return stamp[vertex] == current;
+    }
+
+    /** @return true if the vertex was reached and removed from the queue */
+    public boolean isSettled(int vertex) {
+        return stamp[vertex] == current && !queue.contains(vertex);
+    }
+
+    /** @return the tentative distance of the vertex, Long.MAX_VALUE if not reached */
+    public long getDistance(int vertex) {
+        return stamp[vertex] == current ? distance[vertex] : Long.MAX_VALUE;
+    }
+
+    /** @return the predecessor of the vertex, -1 if it is a source or not reached */
+    public int getPredecessor(int vertex) {
+        return stamp[vertex] == current ? predecessor[vertex] : -1;
+    }
+
+    /** @return the queue of the search */
+    public IndexedMinHeap queue() {
+        return queue;
+    }
+}
@@ -0,0 +1,430 @@
+package schawath.maxime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Graph stored on disk by coordinate tiles, loaded on demand.
+ * The plane is cut in square tiles; the adjacency lists of the vertices of a tile are stored
+ * together in the file, so a search mostly reads tiles around its frontier.
+ * Only the directory (tile and index of each vertex in its tile, tile offsets) stays in memory.
+ * The file is memory-mapped by large segments, so the operating system pages it in on demand;
+ * a tile is decoded from the mapping the first time one of its vertices is visited and kept in
+ * an LRU of at most maxResidentTiles tiles (mapping each tile separately would leak mappings
+ * until the garbage collector releases them). Vertex ids are the original ones, so any engine
+ * taking a {@link WeightedGraph} runs on it unchanged.
+ * An instance holds the LRU and must not be shared between threads.
+ */
+public final class TiledGraph implements WeightedGraph, Closeable {
+    /** Magic number starting a tile file ("TIL1") */
+    private static final int MAGIC = 0x54494C31;
+    /** Maximum size of a mapped region of the file, in bytes */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final int[] tileOf;       // tile of each vertex
+    private final int[] localIndex;   // index of each vertex in its tile
+    private final long[] tileOffset;  // tile t is stored in [tileOffset[t], tileOffset[t + 1]) of the file
+    private final int[] tileSegment;  // mapped segment holding each tile
+    private final long[] segmentOffset;
+    private final ByteBuffer[] segments; // mapped on first use
+    private final boolean symmetric;
+    private final Map<Integer, Tile> resident;
+    private Tile lastTile;            // most recently used, to skip the LRU lookup
+    private long nLoads;
+    private long nEvictions;
+
+    private TiledGraph(FileChannel channel, int[] tileOf, int[] localIndex, long[] tileOffset, boolean symmetric,
+                       int maxResidentTiles) {
+        this.channel = channel;
+        this.tileOf = tileOf;
+        this.localIndex = localIndex;
+        this.tileOffset = tileOffset;
+        this.symmetric = symmetric;
+        // group consecutive tiles in segments of at most SEGMENT_SIZE bytes (or one larger tile)
+        int nTiles = tileOffset.length - 1;
+        tileSegment = new int[nTiles];
+        long[] starts = new long[nTiles + 1];
+        int nSegments = 0;
+        for (int t = 0; t < nTiles; ++t) {
+            if (t == 0 || tileOffset[t + 1] - starts[nSegments - 1] > SEGMENT_SIZE) starts[nSegments++] = tileOffset[t];
+            tileSegment[t] = nSegments - 1;
+        }
+        starts[nSegments] = tileOffset[nTiles];
+        segmentOffset = Arrays.copyOf(starts, nSegments + 1);
+        segments = new ByteBuffer[nSegments];
+        this.resident = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest) {
+                if (size() <= maxResidentTiles) return false;
+                ++nEvictions;
+                if (lastTile == eldest.getValue()) lastTile = null;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Write a graph as a tile file
+     *
+     * @param graph     - the graph
+     * @param vertices  - the vertices of the graph, indexed by id, giving the coordinates
+     * @param tileSize  - the side of a tile, in coordinate units
+     * @param symmetric - true if predecessors are the successors (undirected graph), to store them once
+     * @param filename  - the tile file
+     * @throws IOException              if a write error occurred
+     * @throws IllegalArgumentException if the vertices do not match the graph or there are more than 2^31 cells
+     */
+    public static void write(WeightedGraph graph, List<? extends CartesianVertex> vertices, int tileSize,
+                             boolean symmetric, String filename) throws IOException {
+        int n = graph.getNVertices();
+        if (vertices.size() != n)
+            throw new IllegalArgumentException("Vertices do not match the graph size");
+        if (tileSize <= 0)
+            throw new IllegalArgumentException("tileSize cannot be <= 0");
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (CartesianVertex v : vertices) {
+            minX = Math.min(minX, v.getX());
+            minY = Math.min(minY, v.getY());
+            maxX = Math.max(maxX, v.getX());
+            maxY = Math.max(maxY, v.getY());
+        }
+        long columns = (maxX - (long) minX) / tileSize + 1;
+        long rows = (maxY - (long) minY) / tileSize + 1;
+        // cell numbers are sorted in the high half of a long, they must fit a non negative int
+        if (rows > (Integer.MAX_VALUE + 1L) / columns)
+            throw new IllegalArgumentException("Too many tiles (" + columns + " x " + rows + "), use a larger tileSize");
+
+        // number the non empty tiles in (row, column) order, then bucket vertices by tile (counting sort)
+        long[] keys = new long[n];
+        for (int id = 0; id < n; ++id) {
+            CartesianVertex v = vertices.get(id);
+            long cell = ((v.getY() - (long) minY) / tileSize) * columns + (v.getX() - (long) minX) / tileSize;
+            keys[id] = (cell << 32) | id;
+        }
+        Arrays.sort(keys);
+        int[] tileOf = new int[n];
+        int[] localIndex = new int[n];
+        int[] order = new int[n];
+        int nTiles = 0;
+        for (int i = 0; i < n; ++i) {
+            if (i == 0 || keys[i] >>> 32 != keys[i - 1] >>> 32) ++nTiles;
+            int id = (int) keys[i];
+            order[i] = id;
+            tileOf[id] = nTiles - 1;
+        }
+        int[] tileStart = new int[nTiles + 1]; // vertices of tile t are order[tileStart[t], tileStart[t + 1])
+        for (int i = 0; i < n; ++i) {
+            int t = tileOf[order[i]];
+            if (i == 0 || t != tileOf[order[i - 1]]) tileStart[t] = i;
+            localIndex[order[i]] = i - tileStart[t];
+        }
+        tileStart[nTiles] = n;
+
+        // sizing pass, so that tiles are written as they are encoded instead of all being kept in memory
+        long[] tileOffset = new long[nTiles + 1];
+        tileOffset[0] = 4L * 4 + 8L * n + 8L * (nTiles + 1);
+        for (int t = 0; t < nTiles; ++t) {
+            tileOffset[t + 1] = tileOffset[t] + tileByteSize(graph, order, tileStart[t], tileStart[t + 1], symmetric);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 20))) {
+            out.writeInt(MAGIC);
+            out.writeInt(n);
+            out.writeInt(nTiles);
+            out.writeInt(symmetric ? 1 : 0);
+            for (int t : tileOf) out.writeInt(t);
+            for (int i : localIndex) out.writeInt(i);
+            for (long offset : tileOffset) out.writeLong(offset);
+            for (int t = 0; t < nTiles; ++t) {
+                byte[] tile = encodeTile(graph, order, tileStart[t], tileStart[t + 1], symmetric);
+                if (tile.length != tileOffset[t + 1] - tileOffset[t])
+                    throw new IllegalStateException("Adjacency of tile " + t + " changed while writing");
+                out.write(tile);
+            }
+        }
+    }
+
+    /**
+     * Size of an encoded tile: vertex count, then per list direction k + 1 offsets and 12 bytes per arc
+     */
+    private static long tileByteSize(WeightedGraph graph, int[] order, int from, int to, boolean symmetric) {
+        long[] nArcs = new long[1];
+        for (int i = from; i < to; ++i) {
+            graph.forEachSuccessor(order[i], (head, weight) -> ++nArcs[0]);
+            if (!symmetric) graph.forEachPredecessor(order[i], (head, weight) -> ++nArcs[0]);
+        }
+        return 4 + (symmetric ? 1 : 2) * 4L * (to - from + 1) + 12 * nArcs[0];
+    }
+
+    /**
+     * Encode the adjacency of the vertices of a tile: number of vertices, then successor
+     * lists (offsets, heads, weights) and, if not symmetric, predecessor lists
+     */
+    private static byte[] encodeTile(WeightedGraph graph, int[] order, int from, int to, boolean symmetric) {
+        ListEncoder successors = new ListEncoder(to - from);
+        ListEncoder predecessors = symmetric ? null : new ListEncoder(to - from);
+        for (int i = from; i < to; ++i) {
+            graph.forEachSuccessor(order[i], successors::add);
+            successors.end();
+            if (!symmetric) {
+                graph.forEachPredecessor(order[i], predecessors::add);
+                predecessors.end();
+            }
+        }
+        int size = 4 + successors.byteSize() + (symmetric ? 0 : predecessors.byteSize());
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(to - from);
+        successors.put(buffer);
+        if (!symmetric) predecessors.put(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Open a tile file, no tile is loaded yet
+     *
+     * @param filename         - the tile file
+     * @param maxResidentTiles - maximum number of tiles kept mapped
+     * @return the tiled graph, to close after use
+     * @throws IOException              if a read error occurred
+     * @throws IllegalArgumentException if file is malformed
+     */
+    public static TiledGraph open(String filename, int maxResidentTiles) throws IOException {
+        if (maxResidentTiles <= 0)
+            throw new IllegalArgumentException("maxResidentTiles cannot be <= 0");
+        int[] tileOf;
+        int[] localIndex;
+        long[] tileOffset;
+        boolean symmetric;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 20))) {
+            if (in.readInt() != MAGIC)
+                throw new IllegalArgumentException("Not a tile file");
+            int n = in.readInt();
+            int nTiles = in.readInt();
+            symmetric = in.readInt() != 0;
+            tileOf = new int[n];
+            localIndex = new int[n];
+            tileOffset = new long[nTiles + 1];
+            for (int v = 0; v < n; ++v) tileOf[v] = in.readInt();
+            for (int v = 0; v < n; ++v) localIndex[v] = in.readInt();
+            for (int t = 0; t <= nTiles; ++t) tileOffset[t] = in.readLong();
+        }
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        return new TiledGraph(channel, tileOf, localIndex, tileOffset, symmetric, maxResidentTiles);
+    }
+
+    @Override
+    public int getNVertices() {
+        return tileOf.length;
+    }
+
+    /** @return number of tiles in the file */
+    public int getNTiles() {
+        return tileOffset.length - 1;
+    }
+
+    /** @return number of tiles currently resident */
+    public int getNResidentTiles() {
+        return resident.size();
+    }
+
+    /** @return number of tiles loaded since the last {@link #resetCounters()} */
+    public long getNLoads() {
+        return nLoads;
+    }
+
+    /** @return number of tiles dropped from the LRU since the last {@link #resetCounters()} */
+    public long getNEvictions() {
+        return nEvictions;
+    }
+
+    /**
+     * Reset the load and eviction counters, resident tiles are kept
+     */
+    public void resetCounters() {
+        nLoads = 0;
+        nEvictions = 0;
+    }
+
+    @Override
+    public void forEachSuccessor(int vertex, ArcVisitor visitor) {
+        tile(tileOf[vertex]).visit(localIndex[vertex], true, visitor);
+    }
+
+    @Override
+    public void forEachPredecessor(int vertex, ArcVisitor visitor) {
+        tile(tileOf[vertex]).visit(localIndex[vertex], false, visitor);
+    }
+
+    private Tile tile(int t) {
+        if (lastTile != null && lastTile.index == t) return lastTile;
+        Tile tile = resident.get(t);
+        if (tile == null) {
+            ByteBuffer segment = segment(tileSegment[t]);
+            int position = (int) (tileOffset[t] - segmentOffset[tileSegment[t]]);
+            tile = new Tile(t, segment.duplicate().position(position), symmetric);
+            ++nLoads;
+            resident.put(t, tile);
+        }
+        lastTile = tile;
+        return tile;
+    }
+
+    private ByteBuffer segment(int s) {
+        if (segments[s] == null) {
+            try {
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, segmentOffset[s], segmentOffset[s + 1] - segmentOffset[s]);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map segment " + s, e);
+            }
+        }
+        return segments[s];
+    }
+
+    /**
+     * Close the file and drop the resident tiles
+     *
+     * @throws IOException if an error occurred
+     */
+    @Override
+    public void close() throws IOException {
+        resident.clear();
+        lastTile = null;
+        Arrays.fill(segments, null);
+        channel.close();
+    }
+
+    /**
+     * A resident tile, decoded from the mapped file
+     */
+    private static final class Tile {
+        private final int index;
+        private final int[] successorOffsets;   // arcs of local vertex i are in [offsets[i], offsets[i + 1])
+        private final int[] successorHeads;
+        private final long[] successorWeights;
+        private final int[] predecessorOffsets; // same arrays as successors for a symmetric graph
+        private final int[] predecessorHeads;
+        private final long[] predecessorWeights;
+
+        Tile(int index, ByteBuffer buffer, boolean symmetric) {
+            this.index = index;
+            int nVertices = buffer.getInt();
+            successorOffsets = readInts(buffer, nVertices + 1);
+            successorHeads = readInts(buffer, successorOffsets[nVertices]);
+            successorWeights = readLongs(buffer, successorOffsets[nVertices]);
+            if (symmetric) {
+                predecessorOffsets = successorOffsets;
+                predecessorHeads = successorHeads;
+                predecessorWeights = successorWeights;
+            } else {
+                predecessorOffsets = readInts(buffer, nVertices + 1);
+                predecessorHeads = readInts(buffer, predecessorOffsets[nVertices]);
+                predecessorWeights = readLongs(buffer, predecessorOffsets[nVertices]);
+            }
+        }
+
+        private static int[] readInts(ByteBuffer buffer, int size) {
+            int[] values = new int[size];
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + 4 * size);
+            return values;
+        }
+
+        private static long[] readLongs(ByteBuffer buffer, int size) {
+            long[] values = new long[size];
+            buffer.asLongBuffer().get(values);
+            buffer.position(buffer.position() + 8 * size);
+            return values;
+        }
+
+        void visit(int local, boolean forward, ArcVisitor visitor) {
+            int[] offsets = forward ? successorOffsets : predecessorOffsets;
+            int[] heads = forward ? successorHeads : predecessorHeads;
+            long[] weights = forward ? successorWeights : predecessorWeights;
+            for (int i = offsets[local]; i < offsets[local + 1]; ++i) {
+                visitor.visit(heads[i], weights[i]);
+            }
+        }
+    }
+
+    /**
+     * Collects the adjacency lists of the vertices of a tile, one vertex after the other
+     */
+    private static final class ListEncoder {
+        private final int[] offsets;
+        private int[] heads = new int[64];
+        private long[] weights = new long[64];
+        private int nVertices;
+        private int nArcs;
+
+        ListEncoder(int nVertices) {
+            offsets = new int[nVertices + 1];
+        }
+
+        void add(int head, long weight) {
+            if (nArcs == heads.length) {
+                heads = Arrays.copyOf(heads, nArcs * 2);
+                weights = Arrays.copyOf(weights, nArcs * 2);
+            }
+            heads[nArcs] = head;
+            weights[nArcs] = weight;
+            ++nArcs;
+        }
+
+        void end() {
+            offsets[++nVertices] = nArcs;
+        }
+
+        int byteSize() {
+            return 4 * offsets.length + 12 * nArcs;
+        }
+
+        void put(ByteBuffer buffer) {
+            for (int offset : offsets) buffer.putInt(offset);
+            for (int i = 0; i < nArcs; ++i) buffer.putInt(heads[i]);
+            for (int i = 0; i < nArcs; ++i) buffer.putLong(weights[i]);
+        }
+    }
+
+    /**
+     * Convert a graph file to a tile file, then replay random queries on it and print the tile counters.
+     * Usage: TiledGraph graphFile tileSize output [maxResidentTiles]
+     *
+     * @param args - the command line arguments
+     * @throws IOException if a read or write error occurred
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: TiledGraph graphFile tileSize output [maxResidentTiles]");
+            return;
+        }
+        UndirectedGraph<CartesianVertex> graph = WorkloadRunner.loadGraph(args[0]);
+        write(graph, graph.getVertices(), Integer.parseInt(args[1]), true, args[2]);
+        try (TiledGraph tiled = open(args[2], args.length > 3 ? Integer.parseInt(args[3]) : 64)) {
+            DijkstraBidirectionalConfigurable engine = new DijkstraBidirectionalConfigurable(tiled, AlternationStrategy.SMALLER_RADIUS);
+            Random random = new Random(20220404);
+            for (int i = 0; i < 100; ++i) {
+                engine.run(random.nextInt(tiled.getNVertices()), random.nextInt(tiled.getNVertices()));
+            }
+            System.out.println(tiled.getNTiles() + " tiles, 100 queries: " + tiled.getNLoads() + " loads, "
+                    + tiled.getNEvictions() + " evictions, " + tiled.getNResidentTiles() + " resident");
+        }
+    }
+}
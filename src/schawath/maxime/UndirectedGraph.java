@@ -0,0 +1,375 @@
+package schawath.maxime;
+
+import graph.core.EdgeWeighter;
+import graph.core.Vertex;
+import graph.core.VertexFactory;
+import graph.data.CartesianVertexData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Undirected graph storing each edge once.
+ * Edges are kept in plain arrays (both endpoints and the weight, computed once in bulk by
+ * {@link EdgeWeights}, as int when they fit), and
+ * each vertex indexes its incident edges, so an edge is visited from both endpoints.
+ * Compared to the {@link graph.core.impl.Digraph} built by {@link graph.reader.CartesianGraphReader},
+ * which holds two edge objects (and two weight computations) per undirected edge,
+ * this halves the edge storage. Duplicate edges and self-loops are removed when building.
+ *
+ * @param <V> Vertex type
+ */
+public final class UndirectedGraph<V extends Vertex> implements WeightedGraph {
+    /** Error message used if number of vertices does not match announced number. */
+    private static final String ILLEGAL_N_VERTICES = "Illegal number of vertices (%d vertices, expected %d)";
+    /** Error message used if a line describing a vertex contains an insufficient number of tokens. */
+    private static final String ILLEGAL_N_TOKENS = "Invalid number of tokens to describe a vertex (got %d, expected %d)";
+    /** Error message used when a vertex is missing in the file */
+    private static final String MISSING_VERTEX = "Missing vertex description or bad order (id: %d)";
+
+    /**
+     * UndirectedGraph builder
+     *
+     * @param <V> Vertex type
+     */
+    public static class Builder<V extends Vertex> {
+        private final List<V> vertices;
+        private long[] edges = new long[16]; // (smaller endpoint << 32) | larger endpoint
+        private int nEdges;
+        private int nSelfLoops;
+
+        /**
+         * @param nVertices - number of vertices in the graph
+         */
+        public Builder(int nVertices) {
+            if (nVertices <= 0)
+                throw new IllegalArgumentException("nVertices cannot be <= 0");
+            vertices = new ArrayList<>(Collections.nCopies(nVertices, null));
+        }
+
+        /**
+         * Add a vertex to the graph
+         *
+         * @param vertex - the vertex, stored at its id
+         */
+        public void addVertex(V vertex) {
+            assertValidId(vertex.id());
+            vertices.set(vertex.id(), vertex);
+        }
+
+        /**
+         * Add an edge to the graph, in any direction. Self-loops are ignored
+         *
+         * @param u - id of one endpoint
+         * @param v - id of the other endpoint
+         */
+        public void addEdge(int u, int v) {
+            assertValidId(u);
+            assertValidId(v);
+            if (u == v) {
+                ++nSelfLoops;
+                return;
+            }
+            if (nEdges == edges.length) edges = Arrays.copyOf(edges, nEdges * 2);
+            edges[nEdges++] = ((long) Math.min(u, v) << 32) | Math.max(u, v);
+        }
+
+        /**
+         * Build the graph, removing duplicate edges
+         *
+         * @param weighter - the weighting function, called once per edge (or computed in bulk, see {@link EdgeWeights})
+         * @return a new graph
+         */
+        public UndirectedGraph<V> build(EdgeWeighter<? super V> weighter) {
+            if (vertices.stream().anyMatch(Objects::isNull))
+                throw new RuntimeException("Cannot build graph, missing vertices...");
+
+            Arrays.sort(edges, 0, nEdges);
+            int m = 0;
+            for (int i = 0; i < nEdges; ++i) {
+                if (m == 0 || edges[m - 1] != edges[i]) edges[m++] = edges[i];
+            }
+
+            int n = vertices.size();
+            int[] endpointA = new int[m];
+            int[] endpointB = new int[m];
+            int[] firstEdge = new int[n + 1];
+            for (int e = 0; e < m; ++e) {
+                endpointA[e] = (int) (edges[e] >>> 32);
+                endpointB[e] = (int) edges[e];
+                ++firstEdge[endpointA[e] + 1];
+                ++firstEdge[endpointB[e] + 1];
+            }
+            for (int v = 0; v < n; ++v) {
+                firstEdge[v + 1] += firstEdge[v];
+            }
+            EdgeWeights weight = EdgeWeights.compute(vertices, weighter, endpointA, endpointB);
+            int[] incident = new int[2 * m];
+            int[] next = Arrays.copyOf(firstEdge, n);
+            for (int e = 0; e < m; ++e) {
+                incident[next[endpointA[e]]++] = e;
+                incident[next[endpointB[e]]++] = e;
+            }
+            return new UndirectedGraph<>(Collections.unmodifiableList(vertices), endpointA, endpointB, weight,
+                    firstEdge, incident, nEdges - m, nSelfLoops);
+        }
+
+        private void assertValidId(int id) {
+            if (id < 0 || id >= vertices.size())
+                throw new IllegalArgumentException("Vertex id must be between " + 0 + " and " + (vertices.size() - 1));
+        }
+    }
+
+    private final List<V> vertices;
+    private final int[] endpointA;  // smaller endpoint of each edge
+    private final int[] endpointB;  // larger endpoint of each edge
+    private final EdgeWeights weight; // weight of each edge
+    private final int[] firstEdge;  // incident edges of v are in [firstEdge[v], firstEdge[v + 1])
+    private final int[] incident;   // edge ids, indexed by firstEdge
+    private final int nDuplicates;
+    private final int nSelfLoops;
+
+    private UndirectedGraph(List<V> vertices, int[] endpointA, int[] endpointB, EdgeWeights weight,
+                            int[] firstEdge, int[] incident, int nDuplicates, int nSelfLoops) {
+        this.vertices = vertices;
+        this.endpointA = endpointA;
+        this.endpointB = endpointB;
+        this.weight = weight;
+        this.firstEdge = firstEdge;
+        this.incident = incident;
+        this.nDuplicates = nDuplicates;
+        this.nSelfLoops = nSelfLoops;
+    }
+
+    /**
+     * Read a graph in the format of {@link graph.reader.CartesianGraphReader}
+     *
+     * @param vertexFactory - the factory building vertices from their coordinates
+     * @param weighter      - the weighting function, called once per edge
+     * @param filename      - the file
+     * @return the graph
+     * @throws IOException              if a read error occurred
+     * @throws IllegalArgumentException if file is malformed
+     */
+    public static <V extends Vertex> UndirectedGraph<V> read(VertexFactory<V, CartesianVertexData> vertexFactory,
+                                                             EdgeWeighter<? super V> weighter,
+                                                             String filename) throws IOException {
+        return read(vertexFactory, weighter, new FileReader(filename), null);
+    }
+
+    /**
+     * Read a graph in the format of {@link graph.reader.CartesianGraphReader}, merging the components
+     * of the endpoints of each edge as it is parsed
+     *
+     * @param vertexFactory - the factory building vertices from their coordinates
+     * @param weighter      - the weighting function, called once per edge
+     * @param filename      - the file
+     * @param components    - the union-find receiving the edges, null if not needed
+     * @return the graph
+     * @throws IOException              if a read error occurred
+     * @throws IllegalArgumentException if file is malformed
+     */
+    public static <V extends Vertex> UndirectedGraph<V> read(VertexFactory<V, CartesianVertexData> vertexFactory,
+                                                             EdgeWeighter<? super V> weighter,
+                                                             String filename,
+                                                             ConnectedComponents.Builder components) throws IOException {
+        return read(vertexFactory, weighter, new FileReader(filename), components);
+    }
+
+    /**
+     * Read a graph in the format of {@link graph.reader.CartesianGraphReader}
+     *
+     * @param vertexFactory     - the factory building vertices from their coordinates
+     * @param weighter          - the weighting function, called once per edge
+     * @param inputStreamReader - the reader
+     * @return the graph
+     * @throws IOException              if a read error occurred
+     * @throws IllegalArgumentException if file is malformed
+     */
+    public static <V extends Vertex> UndirectedGraph<V> read(VertexFactory<V, CartesianVertexData> vertexFactory,
+                                                             EdgeWeighter<? super V> weighter,
+                                                             InputStreamReader inputStreamReader) throws IOException {
+        return read(vertexFactory, weighter, inputStreamReader, null);
+    }
+
+    /**
+     * Read a graph in the format of {@link graph.reader.CartesianGraphReader}, merging the components
+     * of the endpoints of each edge as it is parsed
+     *
+     * @param vertexFactory     - the factory building vertices from their coordinates
+     * @param weighter          - the weighting function, called once per edge
+     * @param inputStreamReader - the reader
+     * @param components        - the union-find receiving the edges, null if not needed
+     * @return the graph
+     * @throws IOException              if a read error occurred
+     * @throws IllegalArgumentException if file is malformed
+     */
+    public static <V extends Vertex> UndirectedGraph<V> read(VertexFactory<V, CartesianVertexData> vertexFactory,
+                                                             EdgeWeighter<? super V> weighter,
+                                                             InputStreamReader inputStreamReader,
+                                                             ConnectedComponents.Builder components) throws IOException {
+        try (BufferedReader reader = new BufferedReader(inputStreamReader)) {
+            String line = reader.readLine();
+            if (line == null)
+                throw new IllegalArgumentException("File empty");
+            int n = Integer.parseInt(line);
+            Builder<V> builder = new Builder<>(n);
+
+            for (int v = 0; v < n; ++v) {
+                line = reader.readLine();
+                if (line == null)
+                    throw new IllegalArgumentException(String.format(ILLEGAL_N_VERTICES, v, n));
+                String[] tokens = line.split(" ");
+                if (tokens.length < 3)
+                    throw new IllegalArgumentException(String.format(ILLEGAL_N_TOKENS, tokens.length, 3));
+                if (Integer.parseInt(tokens[0]) != v)
+                    throw new IllegalArgumentException(String.format(MISSING_VERTEX, v));
+                CartesianVertexData data = new CartesianVertexData();
+                data.x = Integer.parseInt(tokens[1]);
+                data.y = Integer.parseInt(tokens[2]);
+                builder.addVertex(vertexFactory.makeVertex(v, data));
+            }
+
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] tokens = line.split(" ");
+                int from = Integer.parseInt(tokens[0]);
+                for (int i = 1; i < tokens.length; ++i) {
+                    int to = Integer.parseInt(tokens[i]);
+                    builder.addEdge(from, to);
+                    if (components != null) components.union(from, to);
+                }
+            }
+            return builder.build(weighter);
+        }
+    }
+
+    /**
+     * Read a graph in the binary format written by {@link GeometricGraphGenerator#writeBinary}
+     *
+     * @param vertexFactory - the factory building vertices from their coordinates
+     * @param weighter      - the weighting function, called once per edge
+     * @param filename      - the file
+     * @return the graph
+     * @throws IOException              if a read error occurred
+     * @throws IllegalArgumentException if file is malformed
+     */
+    public static <V extends Vertex> UndirectedGraph<V> readBinary(VertexFactory<V, CartesianVertexData> vertexFactory,
+                                                                   EdgeWeighter<? super V> weighter,
+                                                                   String filename) throws IOException {
+        return readBinary(vertexFactory, weighter, filename, null);
+    }
+
+    /**
+     * Read a graph in the binary format written by {@link GeometricGraphGenerator#writeBinary}, merging
+     * the components of the endpoints of each edge as it is parsed
+     *
+     * @param vertexFactory - the factory building vertices from their coordinates
+     * @param weighter      - the weighting function, called once per edge
+     * @param filename      - the file
+     * @param components    - the union-find receiving the edges, null if not needed
+     * @return the graph
+     * @throws IOException              if a read error occurred
+     * @throws IllegalArgumentException if file is malformed
+     */
+    public static <V extends Vertex> UndirectedGraph<V> readBinary(VertexFactory<V, CartesianVertexData> vertexFactory,
+                                                                   EdgeWeighter<? super V> weighter,
+                                                                   String filename,
+                                                                   ConnectedComponents.Builder components) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 20))) {
+            if (in.readInt() != GeometricGraphGenerator.BINARY_MAGIC)
+                throw new IllegalArgumentException("Not a binary graph file");
+            int n = in.readInt();
+            Builder<V> builder = new Builder<>(n);
+            for (int v = 0; v < n; ++v) {
+                CartesianVertexData data = new CartesianVertexData();
+                data.x = in.readInt();
+                data.y = in.readInt();
+                builder.addVertex(vertexFactory.makeVertex(v, data));
+            }
+            for (int v = 0; v < n; ++v) {
+                int degree = in.readInt();
+                for (int i = 0; i < degree; ++i) {
+                    int u = in.readInt();
+                    if (u > v) { // each edge is listed from both endpoints
+                        builder.addEdge(v, u);
+                        if (components != null) components.union(v, u);
+                    }
+                }
+            }
+            return builder.build(weighter);
+        }
+    }
+
+    /** @return All vertices */
+    public List<V> getVertices() {
+        return vertices;
+    }
+
+    @Override
+    public int getNVertices() {
+        return vertices.size();
+    }
+
+    /** @return number of (undirected) edges */
+    public int getNEdges() {
+        return weight.size();
+    }
+
+    /** @return number of duplicate edges removed when building, including the reverse copy listed by the file */
+    public int getNDuplicates() {
+        return nDuplicates;
+    }
+
+    /** @return number of self-loops removed when building */
+    public int getNSelfLoops() {
+        return nSelfLoops;
+    }
+
+    /** @return degree of a vertex */
+    public int getDegree(int vertex) {
+        return firstEdge[vertex + 1] - firstEdge[vertex];
+    }
+
+    /**
+     * @param edge   - an edge id
+     * @param vertex - one endpoint of the edge
+     * @return the other endpoint of the edge
+     */
+    public int other(int edge, int vertex) {
+        return endpointA[edge] ^ endpointB[edge] ^ vertex;
+    }
+
+    /** @return weight of an edge */
+    public long weight(int edge) {
+        return weight.get(edge);
+    }
+
+    /** @return weights of all the edges, indexed by edge id */
+    public EdgeWeights getWeights() {
+        return weight;
+    }
+
+    @Override
+    public void forEachSuccessor(int vertex, ArcVisitor visitor) {
+        for (int i = firstEdge[vertex]; i < firstEdge[vertex + 1]; ++i) {
+            int e = incident[i];
+            visitor.visit(endpointA[e] ^ endpointB[e] ^ vertex, weight.get(e));
+        }
+    }
+
+    @Override
+    public void forEachPredecessor(int vertex, ArcVisitor visitor) {
+        forEachSuccessor(vertex, visitor);
+    }
+}
@@ -0,0 +1,66 @@
+package schawath.maxime;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Vertex orderings improving locality: vertices close in the plane get close ids,
+ * so their data is close in memory and the ids of neighbours differ by small gaps
+ */
+public final class VertexOrdering {
+    private VertexOrdering() {
+    }
+
+    /**
+     * Order vertices along a Hilbert curve over their coordinates
+     *
+     * @param vertices - the vertices, indexed by id
+     * @return order[i] = id of the i-th vertex along the curve
+     */
+    public static int[] hilbert(List<? extends CartesianVertex> vertices) {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (CartesianVertex v : vertices) {
+            minX = Math.min(minX, v.getX());
+            minY = Math.min(minY, v.getY());
+            maxX = Math.max(maxX, v.getX());
+            maxY = Math.max(maxY, v.getY());
+        }
+        long extent = Math.max(1L + maxX - minX, 1L + maxY - minY);
+        int bits = 64 - Long.numberOfLeadingZeros(extent - 1);
+        int shift = Math.max(0, bits - 16); // 16 bits per coordinate, the curve index fits in 32 bits
+        long[] keys = new long[vertices.size()];
+        for (int id = 0; id < keys.length; ++id) {
+            CartesianVertex v = vertices.get(id);
+            long d = hilbertIndex((int) (((long) v.getX() - minX) >>> shift), (int) (((long) v.getY() - minY) >>> shift));
+            keys[id] = (d << 32) | id;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    /**
+     * Index of a point on the Hilbert curve of a 2^16 x 2^16 grid
+     */
+    private static long hilbertIndex(int x, int y) {
+        long d = 0;
+        for (int s = 1 << 15; s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) { // rotate the quadrant
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+}
@@ -0,0 +1,39 @@
+package schawath.maxime;
+
+/**
+ * Read-only view of a weighted graph, by vertex ids, that search engines can traverse
+ * without depending on how the adjacency is stored
+ */
+public interface WeightedGraph {
+
+    /**
+     * Visitor of the arcs around a vertex
+     */
+    @FunctionalInterface
+    interface ArcVisitor {
+        /**
+         * @param vertex - the vertex at the other end of the arc
+         * @param weight - the weight of the arc
+         */
+        void visit(int vertex, long weight);
+    }
+
+    /** @return number of vertices */
+    int getNVertices();
+
+    /**
+     * Visit the arcs leaving a vertex
+     *
+     * @param vertex  - the vertex id
+     * @param visitor - called with the destination and weight of each arc
+     */
+    void forEachSuccessor(int vertex, ArcVisitor visitor);
+
+    /**
+     * Visit the arcs entering a vertex
+     *
+     * @param vertex  - the vertex id
+     * @param visitor - called with the origin and weight of each arc
+     */
+    void forEachPredecessor(int vertex, ArcVisitor visitor);
+}
@@ -0,0 +1,510 @@
+package schawath.maxime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays a query workload on a graph and reports throughput and latency percentiles.
+ * The workload is read from a log file (one "from to" pair per line, '#' starts a comment)
+ * or generated at random. Each engine runs a warmup phase, not measured, then the measured
+ * phase where the queries are shared between the threads (one engine instance per thread).
+ * Per query results are written to a CSV file by a background thread, so the measured
+ * threads never wait on the disk.
+ * <p>
+ * Usage: WorkloadRunner [--graph file] [--queries file | --random n] [--seed s]
+ * [--engine dijkstra,bidirectional,configurable,hub] [--strategy STRICT|SMALLER_QUEUE|SMALLER_RADIUS]
+ * [--labels file] [--threads t] [--warmup w] [--output file]
+ */
+public class WorkloadRunner {
+    private static final String DATA_FOLDER = "data/";
+
+    private final int[] from;
+    private final int[] to;
+    private final int nThreads;
+    private final int nWarmup;
+
+    /**
+     * Create a new WorkloadRunner instance
+     *
+     * @param graph    - the graph to query
+     * @param from     - the source of each query
+     * @param to       - the destination of each query
+     * @param nThreads - number of threads of the measured phase
+     * @param nWarmup  - number of queries of the warmup phase (taken from the workload, in order)
+     */
+    public WorkloadRunner(WeightedGraph graph, int[] from, int[] to, int nThreads, int nWarmup) {
+        if (from.length != to.length)
+            throw new IllegalArgumentException("Sources and destinations must have the same length");
+        if (nThreads <= 0)
+            throw new IllegalArgumentException("nThreads cannot be <= 0");
+        for (int i = 0; i < from.length; ++i) {
+            assertValidId(graph, from[i]);
+            assertValidId(graph, to[i]);
+        }
+        this.from = from;
+        this.to = to;
+        this.nThreads = nThreads;
+        this.nWarmup = nWarmup;
+    }
+
+    /**
+     * Read query pairs from a log file
+     *
+     * @param filename - the file, one "from to" pair per line
+     * @return the sources at index 0 and the destinations at index 1
+     * @throws IOException              if a read error occurred
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    public static int[][] readQueries(String filename) throws IOException {
+        int[] sources = new int[1024];
+        int[] destinations = new int[1024];
+        int size = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                ++lineNumber;
+                int comment = line.indexOf('#');
+                if (comment >= 0) line = line.substring(0, comment);
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                String[] tokens = line.split("[\\s,]+");
+                if (tokens.length != 2)
+                    throw new IllegalArgumentException("Invalid query on line " + lineNumber + ": " + line);
+                if (size == sources.length) {
+                    sources = Arrays.copyOf(sources, size * 2);
+                    destinations = Arrays.copyOf(destinations, size * 2);
+                }
+                sources[size] = Integer.parseInt(tokens[0]);
+                destinations[size] = Integer.parseInt(tokens[1]);
+                ++size;
+            }
+        }
+        return new int[][]{Arrays.copyOf(sources, size), Arrays.copyOf(destinations, size)};
+    }
+
+    /**
+     * Generate uniformly random query pairs
+     *
+     * @param nVertices - number of vertices of the graph
+     * @param nQueries  - number of queries
+     * @param seed      - the random seed
+     * @return the sources at index 0 and the destinations at index 1
+     */
+    public static int[][] randomQueries(int nVertices, int nQueries, long seed) {
+        Random random = new Random(seed);
+        int[][] queries = new int[2][nQueries];
+        for (int i = 0; i < nQueries; ++i) {
+            queries[0][i] = random.nextInt(nVertices);
+            queries[1][i] = random.nextInt(nVertices);
+        }
+        return queries;
+    }
+
+    /**
+     * Load a graph, in the text format of {@link graph.reader.CartesianGraphReader}
+     * or in the binary format of {@link GeometricGraphGenerator}
+     *
+     * @param filename - the file
+     * @return the graph
+     * @throws IOException if a read error occurred
+     */
+    public static UndirectedGraph<CartesianVertex> loadGraph(String filename) throws IOException {
+        return loadGraph(filename, null);
+    }
+
+    /**
+     * Load a graph, in the text format of {@link graph.reader.CartesianGraphReader}
+     * or in the binary format of {@link GeometricGraphGenerator}, merging components while parsing the edges
+     *
+     * @param filename   - the file
+     * @param components - the union-find receiving the edges, null if not needed
+     * @return the graph
+     * @throws IOException if a read error occurred
+     */
+    public static UndirectedGraph<CartesianVertex> loadGraph(String filename, ConnectedComponents.Builder components)
+            throws IOException {
+        boolean binary;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            binary = in.available() >= 4 && in.readInt() == GeometricGraphGenerator.BINARY_MAGIC;
+        }
+        return binary
+                ? UndirectedGraph.readBinary(new CartesianVertexFactory(), new CartesianEdgeWeighter(), filename, components)
+                : UndirectedGraph.read(new CartesianVertexFactory(), new CartesianEdgeWeighter(), filename, components);
+    }
+
+    /**
+     * Run the warmup then the measured phase of an engine
+     *
+     * @param name    - the engine name, written to the results
+     * @param factory - creates one engine per thread
+     * @param sink    - receives the result of each measured query (may be null)
+     * @return the measures
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public Report run(String name, EngineFactory factory, ResultSink sink) throws InterruptedException {
+        Engine warmup = factory.create();
+        for (int i = 0; i < nWarmup && from.length > 0; ++i) {
+            warmup.run(from[i % from.length], to[i % to.length]);
+        }
+
+        long[] latencies = new long[from.length];
+        double[] distances = new double[from.length];
+        long[] visited = new long[nThreads];
+        AtomicInteger next = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        for (int t = 0; t < nThreads; ++t) {
+            Engine engine = t == 0 ? warmup : factory.create();
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                for (int i = next.getAndIncrement(); i < from.length; i = next.getAndIncrement()) {
+                    long begin = System.nanoTime();
+                    DijkstraResult result = engine.run(from[i], to[i]);
+                    latencies[i] = System.nanoTime() - begin;
+                    distances[i] = result.getDistance();
+                    visited[thread] += result.getNbVisited();
+                    if (sink != null) sink.accept(name, i, from[i], to[i], result, latencies[i]);
+                }
+            }, "workload-" + name + "-" + t);
+            worker.setUncaughtExceptionHandler((th, e) -> errors.add(e));
+            threads.add(worker);
+            worker.start();
+        }
+        for (Thread worker : threads) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (!errors.isEmpty())
+            throw new IllegalStateException("Query failed in engine " + name, errors.get(0));
+        return new Report(name, elapsed, latencies, distances, Arrays.stream(visited).sum());
+    }
+
+    private static void assertValidId(WeightedGraph graph, int id) {
+        if (id < 0 || id >= graph.getNVertices())
+            throw new IllegalArgumentException("Vertex id must be between " + 0 + " and " + (graph.getNVertices() - 1));
+    }
+
+    /**
+     * A shortest path engine, not shared between threads
+     */
+    @FunctionalInterface
+    public interface Engine {
+        DijkstraResult run(int from, int to);
+    }
+
+    /**
+     * Creates an engine for each thread
+     */
+    @FunctionalInterface
+    public interface EngineFactory {
+        Engine create();
+    }
+
+    /**
+     * Receives the result of each query, from any thread
+     */
+    public interface ResultSink {
+        void accept(String engine, int query, int from, int to, DijkstraResult result, long latencyNanos);
+    }
+
+    /**
+     * Writes the results in a CSV file from a background thread.
+     * Measured threads only enqueue a row (blocking only if the writer is far behind).
+     */
+    public static final class AsyncCsvSink implements ResultSink, AutoCloseable {
+        private static final Row END = new Row(null, 0, 0, 0, 0, 0, 0, 0);
+
+        private final BlockingQueue<Row> rows = new ArrayBlockingQueue<>(1 << 16);
+        private final Thread writer;
+        private volatile Throwable error; // the writer thread failed, rows are dropped
+
+        /**
+         * Open the file and start the writer thread
+         *
+         * @param filename - the CSV file
+         * @throws IOException if the file cannot be opened
+         */
+        public AsyncCsvSink(String filename) throws IOException {
+            Writer out = new BufferedWriter(new FileWriter(filename), 1 << 16);
+            writer = new Thread(() -> write(out), "csv-sink");
+            writer.start();
+        }
+
+        private void write(Writer out) {
+            try (out) {
+                out.write("engine,query,from,to,distance,nbVisited,pathSize,latencyNs\n");
+                StringBuilder line = new StringBuilder(64);
+                for (Row row = rows.take(); row != END; row = rows.take()) {
+                    line.setLength(0);
+                    line.append(row.engine).append(',').append(row.query).append(',')
+                            .append(row.from).append(',').append(row.to).append(',')
+                            .append(row.distance).append(',').append(row.nbVisited).append(',')
+                            .append(row.pathSize).append(',').append(row.latencyNanos).append('\n');
+                    out.append(line);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) { // whatever kills the writer, producers must not block on a full queue
+                error = e;
+                rows.clear();
+            }
+        }
+
+        /**
+         * Queue a row unless the writer failed, waiting for room without blocking forever
+         *
+         * @return false if the writer failed
+         */
+        private boolean enqueue(Row row) throws InterruptedException {
+            while (error == null) {
+                if (rows.offer(row, 100, TimeUnit.MILLISECONDS)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void accept(String engine, int query, int from, int to, DijkstraResult result, long latencyNanos) {
+            if (error != null) return; // reported on close
+            Row row = new Row(engine, query, from, to, result.getDistance(), result.getNbVisited(),
+                    result.getVerticesList().size(), latencyNanos);
+            try {
+                enqueue(row);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Flush the pending rows and close the file
+         *
+         * @throws IOException if a write error occurred or the writer thread failed
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                enqueue(END);
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable e = error;
+            if (e instanceof IOException) throw (IOException) e;
+            if (e != null) throw new IOException("CSV writer thread failed", e);
+        }
+
+        private static final class Row {
+            private final String engine;
+            private final int query;
+            private final int from;
+            private final int to;
+            private final double distance;
+            private final int nbVisited;
+            private final int pathSize;
+            private final long latencyNanos;
+
+            Row(String engine, int query, int from, int to, double distance, int nbVisited, int pathSize, long latencyNanos) {
+                this.engine = engine;
+                this.query = query;
+                this.from = from;
+                this.to = to;
+                this.distance = distance;
+                this.nbVisited = nbVisited;
+                this.pathSize = pathSize;
+                this.latencyNanos = latencyNanos;
+            }
+        }
+    }
+
+    /**
+     * Measures of the measured phase of an engine
+     */
+    public static final class Report {
+        private final String engine;
+        private final long elapsedNanos;
+        private final long[] sortedLatencies;
+        private final double[] distances;
+        private final long nbVisited;
+
+        private Report(String engine, long elapsedNanos, long[] latencies, double[] distances, long nbVisited) {
+            this.engine = engine;
+            this.elapsedNanos = elapsedNanos;
+            this.sortedLatencies = latencies.clone();
+            Arrays.sort(sortedLatencies);
+            this.distances = distances;
+            this.nbVisited = nbVisited;
+        }
+
+        /** @return number of measured queries per second */
+        public double getThroughput() {
+            return sortedLatencies.length * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @param percentile - between 0 and 100
+         * @return latency of the given percentile, in nanoseconds (nearest rank)
+         */
+        public long getLatency(double percentile) {
+            if (sortedLatencies.length == 0) return 0;
+            int rank = (int) Math.ceil(percentile / 100 * sortedLatencies.length);
+            return sortedLatencies[Math.max(0, Math.min(sortedLatencies.length - 1, rank - 1))];
+        }
+
+        /** @return distance found for each query, in workload order (the array is not copied) */
+        public double[] getDistances() {
+            return distances;
+        }
+
+        /** @return total number of vertices visited by the measured queries */
+        public long getNbVisited() {
+            return nbVisited;
+        }
+
+        /**
+         * print the measures in the console
+         */
+        public void print() {
+            System.out.printf("%-13s %8d queries %10.1f q/s  latency us p50 %.1f p90 %.1f p99 %.1f p99.9 %.1f max %.1f  visited %d%n",
+                    engine, sortedLatencies.length, getThroughput(), getLatency(50) / 1e3, getLatency(90) / 1e3,
+                    getLatency(99) / 1e3, getLatency(99.9) / 1e3, getLatency(100) / 1e3, nbVisited);
+        }
+    }
+
+    /**
+     * Create the engine factory for an engine name
+     */
+    private static EngineFactory engine(String name, UndirectedGraph<CartesianVertex> graph, ConnectedComponents components,
+                                        AlternationStrategy strategy, String labels) throws IOException {
+        switch (name) {
+            case "dijkstra":
+                return () -> new Dijkstra(graph, components)::run;
+            case "bidirectional":
+                return () -> new DijkstraBidirectional(graph, components)::run;
+            case "configurable":
+                return () -> new DijkstraBidirectionalConfigurable(graph, strategy, components)::run;
+            case "hub":
+                HubLabeling hubs = labels != null && new File(labels).exists()
+                        ? HubLabeling.load(labels, graph)
+                        : HubLabeling.build(graph, HubLabeling.orderByDegree(graph), true);
+                if (labels != null && !new File(labels).exists()) hubs.save(labels);
+                // distance only, the labels are read-only and shared by all threads
+                return () -> (from, to) -> {
+                    long distance = hubs.distance(from, to);
+                    return new DijkstraResult(0, 0, distance == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : distance,
+                            Collections.emptyList()) {
+                        @Override
+                        void print() {
+                            System.out.println("From " + from + " to " + to + " : " + distance);
+                        }
+                    };
+                };
+            default:
+                throw new IllegalArgumentException("Unknown engine " + name);
+        }
+    }
+
+    /**
+     * Replay a workload.
+     * Usage: see the class documentation
+     *
+     * @param args - the command line arguments
+     * @throws IOException          if a read or write error occurred
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String graphFile = DATA_FOLDER + "R10000_1.txt";
+        String queryFile = null;
+        int nRandom = 1000;
+        long seed = 20220404;
+        String[] engines = {"bidirectional"};
+        AlternationStrategy strategy = AlternationStrategy.SMALLER_RADIUS;
+        String labels = null;
+        int nThreads = 1;
+        int nWarmup = 100;
+        String output = null;
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--graph":
+                    graphFile = args[++i];
+                    break;
+                case "--queries":
+                    queryFile = args[++i];
+                    break;
+                case "--random":
+                    nRandom = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--engine":
+                    engines = args[++i].split(",");
+                    break;
+                case "--strategy":
+                    strategy = AlternationStrategy.valueOf(args[++i]);
+                    break;
+                case "--labels":
+                    labels = args[++i];
+                    break;
+                case "--threads":
+                    nThreads = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    nWarmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--output":
+                    output = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        ConnectedComponents.Builder componentsBuilder = new ConnectedComponents.Builder();
+        UndirectedGraph<CartesianVertex> graph = loadGraph(graphFile, componentsBuilder);
+        ConnectedComponents components = componentsBuilder.build(graph.getNVertices());
+        int[][] queries = queryFile != null ? readQueries(queryFile) : randomQueries(graph.getNVertices(), nRandom, seed);
+        System.out.println("====== Workload " + (queryFile != null ? queryFile : "random, seed " + seed) + " ======");
+        System.out.println("Graph: " + graphFile + " (" + graph.getNVertices() + " vertices, " + graph.getNEdges() + " edges, "
+                + components.getNComponents() + " components)");
+        System.out.println("Queries: " + queries[0].length + ", warmup: " + nWarmup + ", threads: " + nThreads);
+
+        WorkloadRunner runner = new WorkloadRunner(graph, queries[0], queries[1], nThreads, nWarmup);
+        List<Report> reports = new ArrayList<>();
+        try (AsyncCsvSink sink = output != null ? new AsyncCsvSink(output) : null) {
+            for (String name : engines) {
+                Report report = runner.run(name, engine(name, graph, components, strategy, labels), sink);
+                report.print();
+                reports.add(report);
+            }
+        }
+
+        // all engines must agree on the distances
+        for (Report report : reports.subList(1, reports.size())) {
+            for (int i = 0; i < queries[0].length; ++i) {
+                if (report.getDistances()[i] != reports.get(0).getDistances()[i]) {
+                    System.out.println("ERROR " + report.engine + " differs from " + reports.get(0).engine
+                            + " on query " + i + ", from " + queries[0][i] + " to " + queries[1][i]);
+                }
+            }
+        }
+        if (output != null) System.out.println("Results stored in " + output);
+    }
+}
@@ -0,0 +1,246 @@
+package schawath.maxime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * K shortest loopless paths between two vertices (Yen's algorithm, optimized version).
+ * Instead of copying the graph for every spur search, removed arcs and vertices are
+ * blocked with masks that are reset after the search.
+ * The reverse shortest path tree of the target is computed once and reused:
+ * its distances are a lower bound of the distance to the target in any masked graph,
+ * so spur searches are goal directed (A*), and when the tree path from the spur vertex
+ * avoids every blocked arc and vertex it is directly the best spur path.
+ * An instance reuses its search workspace and must not be shared between threads.
+ */
+public class YenKShortestPaths {
+    private final CsrGraph graph;
+    private final SearchWorkspace workspace;
+    private final boolean[] blockedArc;
+    private final boolean[] blockedVertex;
+    private final long[] toTarget;  // distance to the target in the reverse tree
+    private final int[] treeArc;    // next arc towards the target in the reverse tree, -1 if none
+    private int steps;
+    private int nbVisited;
+
+    /**
+     * Create a new YenKShortestPaths instance
+     *
+     * @param graph - the graph to use
+     */
+    public YenKShortestPaths(CsrGraph graph) {
+        this.graph = graph;
+        int n = graph.getNVertices();
+        workspace = new SearchWorkspace(n);
+        blockedArc = new boolean[graph.getNArcs()];
+        blockedVertex = new boolean[n];
+        toTarget = new long[n];
+        treeArc = new int[n];
+    }
+
+    /**
+     * Run the algorithm
+     *
+     * @param from - the source vertex id
+     * @param to   - the destination vertex id
+     * @param k    - the number of paths wanted
+     * @return at most k results, sorted by increasing distance
+     */
+    public List<DijkstraResult> run(int from, int to, int k) {
+        steps = 0;
+        nbVisited = 0;
+        buildReverseTree(to);
+        List<DijkstraResult> results = new ArrayList<>();
+        if (toTarget[from] == Long.MAX_VALUE || k <= 0) return results;
+
+        List<Path> found = new ArrayList<>();
+        PriorityQueue<Path> candidates = new PriorityQueue<>();
+        Set<List<Integer>> known = new HashSet<>();
+        Path first = treePath(from, to, 0);
+        candidates.add(first);
+        known.add(first.vertices);
+
+        while (found.size() < k && !candidates.isEmpty()) {
+            Path path = candidates.poll();
+            found.add(path);
+            results.add(toResult(from, to, path));
+            steps = 0;
+            nbVisited = 0;
+            if (found.size() == k) break;
+
+            // spur from every vertex of the last path but the target
+            for (int i = 0; i + 1 < path.vertices.size(); ++i) {
+                int spur = path.vertices.get(i);
+                List<Integer> root = path.vertices.subList(0, i + 1);
+                for (Path p : found) {
+                    if (p.vertices.size() > i + 1 && p.vertices.subList(0, i + 1).equals(root)) {
+                        blockedArc[p.arcs[i]] = true;
+                    }
+                }
+                for (int j = 0; j < i; ++j) {
+                    blockedVertex[root.get(j)] = true;
+                }
+
+                Path spurPath = isTreePathFree(spur, to) ? treePath(spur, to, 0) : search(spur, to);
+                if (spurPath != null) {
+                    Path candidate = path.prefix(i).concat(spurPath);
+                    if (known.add(candidate.vertices)) candidates.add(candidate);
+                }
+
+                for (Path p : found) {
+                    if (p.arcs.length > i) blockedArc[p.arcs[i]] = false;
+                }
+                for (int j = 0; j < i; ++j) {
+                    blockedVertex[root.get(j)] = false;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Dijkstra from the target on the reverse graph
+     */
+    private void buildReverseTree(int to) {
+        Arrays.fill(toTarget, Long.MAX_VALUE);
+        Arrays.fill(treeArc, -1);
+        workspace.reset();
+        workspace.relax(to, 0, -1);
+        IndexedMinHeap queue = workspace.queue();
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            nbVisited++;
+            long dv = workspace.getDistance(v);
+            toTarget[v] = dv;
+            for (int i = graph.firstIn(v); i < graph.endIn(v); ++i) {
+                ++steps;
+                int arc = graph.inArc(i);
+                int u = graph.tail(arc);
+                if (workspace.relax(u, dv + graph.weight(arc), v)) treeArc[u] = arc;
+            }
+        }
+    }
+
+    /**
+     * @return true if the reverse tree path from the vertex to the target avoids all blocked arcs and vertices
+     */
+    private boolean isTreePathFree(int vertex, int to) {
+        for (int v = vertex; v != to; v = graph.head(treeArc[v])) {
+            if (blockedVertex[v] || blockedArc[treeArc[v]]) return false;
+        }
+        return !blockedVertex[to];
+    }
+
+    /**
+     * @return the reverse tree path from the vertex to the target, starting at the given distance
+     */
+    private Path treePath(int vertex, int to, long start) {
+        List<Integer> vertices = new ArrayList<>();
+        List<Integer> arcs = new ArrayList<>();
+        vertices.add(vertex);
+        for (int v = vertex; v != to; v = graph.head(treeArc[v])) {
+            arcs.add(treeArc[v]);
+            vertices.add(graph.head(treeArc[v]));
+        }
+        return new Path(vertices, arcs.stream().mapToInt(Integer::intValue).toArray(), start + toTarget[vertex]);
+    }
+
+    /**
+     * A* search on the masked graph, guided by the reverse tree distances
+     *
+     * @return the shortest path, null if the target cannot be reached
+     */
+    private Path search(int spur, int to) {
+        workspace.reset();
+        workspace.relax(spur, 0, -1, toTarget[spur]);
+        IndexedMinHeap queue = workspace.queue();
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            nbVisited++;
+            if (u == to) break;
+            long du = workspace.getDistance(u);
+            for (int arc = graph.firstOut(u); arc < graph.endOut(u); ++arc) {
+                ++steps;
+                int v = graph.head(arc);
+                if (blockedArc[arc] || blockedVertex[v] || toTarget[v] == Long.MAX_VALUE) continue;
+                long dv = du + graph.weight(arc);
+                workspace.relax(v, dv, u, dv + toTarget[v]);
+            }
+        }
+        if (!workspace.isSettled(to)) return null;
+
+        LinkedList<Integer> vertices = new LinkedList<>();
+        LinkedList<Integer> arcs = new LinkedList<>();
+        for (int v = to; v != spur; v = workspace.getPredecessor(v)) {
+            int u = workspace.getPredecessor(v);
+            vertices.addFirst(v);
+            arcs.addFirst(lightestFreeArc(u, v));
+        }
+        vertices.addFirst(spur);
+        return new Path(vertices, arcs.stream().mapToInt(Integer::intValue).toArray(), workspace.getDistance(to));
+    }
+
+    private int lightestFreeArc(int from, int to) {
+        int best = -1;
+        for (int arc = graph.firstOut(from); arc < graph.endOut(from); ++arc) {
+            if (graph.head(arc) == to && !blockedArc[arc] && (best == -1 || graph.weight(arc) < graph.weight(best))) {
+                best = arc;
+            }
+        }
+        return best;
+    }
+
+    private DijkstraResult toResult(int from, int to, Path path) {
+        return new DijkstraResult(steps, nbVisited, path.length, path.vertices) {
+            @Override
+            void print() {
+                System.out.println("From " + from + " to " + to + " : " + getDistance() + " " + getVerticesList() + " in " + getSteps() + " steps and " + getNbVisited() + " nodes visited");
+            }
+        };
+    }
+
+    /**
+     * A path as its vertices and arcs
+     */
+    private final class Path implements Comparable<Path> {
+        private final List<Integer> vertices;
+        private final int[] arcs;
+        private final long length;
+
+        Path(List<Integer> vertices, int[] arcs, long length) {
+            this.vertices = vertices;
+            this.arcs = arcs;
+            this.length = length;
+        }
+
+        /**
+         * @return the first i arcs of the path
+         */
+        Path prefix(int i) {
+            long l = 0;
+            for (int j = 0; j < i; ++j) l += graph.weight(arcs[j]);
+            return new Path(vertices.subList(0, i + 1), Arrays.copyOf(arcs, i), l);
+        }
+
+        /**
+         * @return this path followed by a path starting at its last vertex
+         */
+        Path concat(Path other) {
+            List<Integer> v = new ArrayList<>(vertices);
+            v.addAll(other.vertices.subList(1, other.vertices.size()));
+            int[] a = Arrays.copyOf(arcs, arcs.length + other.arcs.length);
+            System.arraycopy(other.arcs, 0, a, arcs.length, other.arcs.length);
+            return new Path(v, a, length + other.length);
+        }
+
+        @Override
+        public int compareTo(Path o) {
+            return Long.compare(length, o.length);
+        }
+    }
+}